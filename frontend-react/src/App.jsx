@@ -226,6 +226,7 @@ export default function App() {
 
   // results
   const [results, setResults] = useState([]); // array of rows
+  const [nextCursor, setNextCursor] = useState(null); // keyset cursor of the next page
   const [searchLoading, setSearchLoading] = useState(false);
   const [searchError, setSearchError] = useState('');
 
@@ -273,7 +274,7 @@ export default function App() {
     setResults((rows) => rows.map((r) => (r.id === id ? updater({ ...r }) : r)));
   }
 
-  async function runSearch() {
+  async function runSearch(cursor = null) {
     setSearchLoading(true);
     setSearchError('');
     try {
@@ -285,13 +286,16 @@ export default function App() {
       if (sReadingStatus) params.set('readingStatus', sReadingStatus);
       if (sTopBook) params.set('topBook', sTopBook);
       if (sLimit) params.set('limit', String(sLimit));
+      if (cursor) params.set('cursor', cursor);
 
       const res = await fetch('/api/register/books?' + params.toString());
       if (!res.ok) throw new Error(`Suche fehlgeschlagen: ${res.status}`);
 
       const data = await res.json().catch(() => []);
       const list = Array.isArray(data) ? data : data.items || data.results || [];
-      setResults(list.map(normalizeRow));
+      const rows = list.map(normalizeRow);
+      setResults((prev) => (cursor ? [...prev, ...rows] : rows));
+      setNextCursor(Array.isArray(data) ? null : data.nextCursor || null);
     } catch (e) {
       setSearchError(e.message || String(e));
     } finally {
@@ -693,7 +697,7 @@ export default function App() {
           </div>
 
           <div style={{ display: 'flex', gap: 8, marginBottom: 12 }}>
-            <button type="button" onClick={runSearch} disabled={searchLoading}>
+            <button type="button" onClick={() => runSearch()} disabled={searchLoading}>
               {searchLoading ? 'Suche…' : 'Suchen'}
             </button>
             <button
@@ -707,6 +711,7 @@ export default function App() {
                 setSTopBook('');
                 setSLimit(20);
                 setResults([]);
+                setNextCursor(null);
                 setSearchError('');
               }}
             >
@@ -876,6 +881,15 @@ export default function App() {
                   </div>
                 </div>
               ))}
+              {nextCursor && (
+                <button
+                  type="button"
+                  onClick={() => runSearch(nextCursor)}
+                  disabled={searchLoading}
+                >
+                  {searchLoading ? 'Lade…' : 'Mehr laden'}
+                </button>
+              )}
             </div>
           ) : (
             !searchLoading && <div style={{ color: '#666' }}>Keine Ergebnisse.</div>
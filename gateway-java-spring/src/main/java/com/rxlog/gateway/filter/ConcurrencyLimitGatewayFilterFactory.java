@@ -0,0 +1,188 @@
+package com.rxlog.gateway.filter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.SignalType;
+
+/**
+ * {@code ConcurrencyLimit} route filter: caps the requests a route has upstream at once and sheds
+ * the rest with 429 and {@code Retry-After}, before they queue up in the backend.
+ *
+ * <p>The cap adapts to measured upstream latency (a simplified gradient limiter): while responses
+ * come back as fast as the long-run average the cap grows by about its square root, when they slow
+ * down it shrinks in proportion, and 5xx or failed calls cut it by 10%. Samples taken while less
+ * than half the cap was in use are ignored, as latency then says nothing about capacity.
+ *
+ * <p>Per route: {@code gateway.concurrency.limit} and {@code gateway.concurrency.in_flight} gauges,
+ * shed requests counted as {@code gateway.requests.shed{route,reason=concurrency}}.
+ */
+@Component
+public class ConcurrencyLimitGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ConcurrencyLimitGatewayFilterFactory.Config> {
+
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private int initialLimit = 20;
+        private int minLimit = 4;
+        private int maxLimit = 200;
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+    }
+
+    static final class AdaptiveLimit {
+        private final Config config;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double limit;
+        private double longRttNanos;
+
+        AdaptiveLimit(Config config) {
+            this.config = config;
+            this.limit = config.getInitialLimit();
+        }
+
+        /** Returns the in-flight count including this request, or -1 if it is over the limit. */
+        int tryAcquire() {
+            while (true) {
+                int n = inFlight.get();
+                if (n >= (int) limit) {
+                    return -1;
+                }
+                if (inFlight.compareAndSet(n, n + 1)) {
+                    return n + 1;
+                }
+            }
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+        }
+
+        synchronized void onSample(long rttNanos, int inFlightAtStart, boolean failed) {
+            if (failed) {
+                limit = Math.max(config.getMinLimit(), limit * 0.9);
+                return;
+            }
+            longRttNanos = longRttNanos == 0 ? rttNanos : longRttNanos * 0.95 + rttNanos * 0.05;
+            if (inFlightAtStart < limit / 2) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / rttNanos));
+            double next = limit * gradient + Math.sqrt(limit);
+            limit =
+                    Math.max(
+                            config.getMinLimit(),
+                            Math.min(config.getMaxLimit(), limit * 0.8 + next * 0.2));
+        }
+
+        /** Seconds a shed client should wait: the typical upstream latency, at least one. */
+        synchronized long retryAfterSeconds() {
+            return Math.max(1, (long) Math.ceil(longRttNanos / 1e9));
+        }
+
+        double limit() {
+            return limit;
+        }
+
+        int inFlight() {
+            return inFlight.get();
+        }
+    }
+
+    private final MeterRegistry meters;
+    private final Map<String, AdaptiveLimit> limits = new ConcurrentHashMap<>();
+
+    public ConcurrencyLimitGatewayFilterFactory(MeterRegistry meters) {
+        super(Config.class);
+        this.meters = meters;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("initialLimit", "minLimit", "maxLimit");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId() != null ? config.getRouteId() : "unknown";
+        AdaptiveLimit adaptive = new AdaptiveLimit(config);
+        // routes are rebuilt on refresh; the gauges follow whichever limit is current
+        if (limits.put(routeId, adaptive) == null) {
+            Gauge.builder("gateway.concurrency.limit", limits, m -> m.get(routeId).limit())
+                    .tag("route", routeId)
+                    .register(meters);
+            Gauge.builder("gateway.concurrency.in_flight", limits, m -> m.get(routeId).inFlight())
+                    .tag("route", routeId)
+                    .register(meters);
+        }
+
+        return (exchange, chain) -> {
+            int atStart = adaptive.tryAcquire();
+            if (atStart < 0) {
+                meters.counter("gateway.requests.shed", "route", routeId, "reason", "concurrency")
+                        .increment();
+                exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+                exchange.getResponse()
+                        .getHeaders()
+                        .set(HttpHeaders.RETRY_AFTER, String.valueOf(adaptive.retryAfterSeconds()));
+                return exchange.getResponse().setComplete();
+            }
+            long started = System.nanoTime();
+            return chain.filter(exchange)
+                    .doFinally(
+                            signal -> {
+                                adaptive.release();
+                                if (signal == SignalType.CANCEL) {
+                                    return; // client went away, no latency sample
+                                }
+                                HttpStatusCode status = exchange.getResponse().getStatusCode();
+                                boolean failed =
+                                        signal == SignalType.ON_ERROR
+                                                || (status != null && status.is5xxServerError());
+                                adaptive.onSample(System.nanoTime() - started, atStart, failed);
+                            });
+        };
+    }
+}
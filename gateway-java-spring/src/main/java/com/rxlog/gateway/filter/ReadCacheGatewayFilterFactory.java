@@ -0,0 +1,354 @@
+package com.rxlog.gateway.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * {@code ReadCache} route filter for GET endpoints: answers from a bounded local cache and lets
+ * identical requests that arrive while one is already upstream share its response (single-flight),
+ * so a burst of equal requests costs the backend one call.
+ *
+ * <p>Requests are keyed by route, path, query parameters sorted by name and the Accept header.
+ * Upstream {@code Cache-Control} is honoured: {@code no-store}, {@code no-cache} and {@code private}
+ * responses are not stored and {@code s-maxage}/{@code max-age} shorten the configured TTL. A
+ * request with {@code no-cache} or {@code max-age=0} skips the stored copy but may still join an
+ * in-flight call. A cached {@code ETag} matching {@code If-None-Match} is answered with 304.
+ *
+ * <p>Only a {@code 200} without {@code Set-Cookie}, {@code private} or {@code no-store} is stored
+ * or handed to coalesced requests; when the leader gets anything else (a 304 for its own validator,
+ * an error), the requests waiting on it go upstream themselves. Conditional requests ({@code
+ * If-None-Match}, {@code If-Modified-Since}) that the cache cannot answer go straight upstream and
+ * never lead or join a shared call, since the answer depends on their validator.
+ *
+ * <p>Headers that describe the leader's exchange rather than the resource ({@code X-RateLimit-*},
+ * {@code Retry-After}, {@code Date}, {@code Age}) are not kept, so a served request keeps its own.
+ *
+ * <p>Served responses carry {@code X-Cache: HIT|MISS|COALESCED|BYPASS}; the same outcomes are
+ * counted as {@code gateway.read.cache{route,result}}.
+ */
+@Component
+public class ReadCacheGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ReadCacheGatewayFilterFactory.Config> {
+
+    private static final Pattern MAX_AGE = Pattern.compile("(?:^|[,\\s])(s-maxage|max-age)=(\\d+)");
+
+    /** Response headers of one exchange that must not be replayed to another. */
+    private static final Set<String> PER_REQUEST_HEADERS =
+            Set.of(
+                    HttpHeaders.TRANSFER_ENCODING,
+                    HttpHeaders.CONNECTION,
+                    HttpHeaders.CONTENT_LENGTH,
+                    HttpHeaders.DATE,
+                    HttpHeaders.AGE,
+                    HttpHeaders.RETRY_AFTER,
+                    "X-Cache");
+
+    public static class Config {
+        private Duration ttl = Duration.ofSeconds(2);
+        private DataSize maxBodySize = DataSize.ofKilobytes(512);
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public DataSize getMaxBodySize() {
+            return maxBodySize;
+        }
+
+        public void setMaxBodySize(DataSize maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+    }
+
+    record CachedResponse(
+            HttpStatusCode status, HttpHeaders headers, byte[] body, long storedAt, long expiresAt) {
+
+        boolean fresh() {
+            return System.nanoTime() < expiresAt;
+        }
+    }
+
+    private final Cache<String, CachedResponse> cache;
+    private final Map<String, Sinks.One<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final MeterRegistry meters;
+
+    public ReadCacheGatewayFilterFactory(
+            MeterRegistry meters,
+            @Value("${gateway.read-cache.max-size:32MB}") DataSize maxSize) {
+        super(Config.class);
+        this.meters = meters;
+        this.cache =
+                Caffeine.newBuilder()
+                        .maximumWeight(maxSize.toBytes())
+                        .weigher((String key, CachedResponse r) -> key.length() + r.body().length)
+                        .build();
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("ttl", "maxBodySize");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // must wrap the response before NettyWriteResponseFilter writes the upstream body into it
+        return new OrderedGatewayFilter(
+                (exchange, chain) -> {
+                    ServerHttpRequest request = exchange.getRequest();
+                    if (request.getMethod() != HttpMethod.GET) {
+                        return chain.filter(exchange);
+                    }
+                    Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+                    String routeId = route != null ? route.getId() : "unknown";
+                    String key = key(routeId, request);
+
+                    if (!skipsStoredCopy(request.getHeaders())) {
+                        CachedResponse cached = cache.getIfPresent(key);
+                        if (cached != null && cached.fresh()) {
+                            return serve(exchange, cached, "HIT", routeId);
+                        }
+                    }
+
+                    if (conditional(request.getHeaders())) {
+                        count(routeId, "BYPASS");
+                        exchange.getResponse().getHeaders().set("X-Cache", "BYPASS");
+                        return chain.filter(exchange);
+                    }
+
+                    Sinks.One<CachedResponse> flight = Sinks.one();
+                    Sinks.One<CachedResponse> running = inFlight.putIfAbsent(key, flight);
+                    if (running != null) {
+                        // the leader emits nothing if its response could not be captured or shared
+                        return running.asMono()
+                                .map(Optional::of)
+                                .defaultIfEmpty(Optional.empty())
+                                .onErrorReturn(Optional.empty())
+                                .flatMap(
+                                        shared ->
+                                                shared.isPresent()
+                                                        ? serve(exchange, shared.get(), "COALESCED", routeId)
+                                                        : chain.filter(exchange));
+                    }
+
+                    count(routeId, "MISS");
+                    exchange.getResponse().getHeaders().set("X-Cache", "MISS");
+                    ServerHttpResponse capturing =
+                            new CapturingResponse(
+                                    exchange.getResponse(),
+                                    config,
+                                    captured -> {
+                                        if (!shareable(captured)) {
+                                            return;
+                                        }
+                                        if (cacheable(captured)) {
+                                            cache.put(key, captured);
+                                        }
+                                        flight.tryEmitValue(captured);
+                                    });
+                    return chain.filter(exchange.mutate().response(capturing).build())
+                            .doFinally(
+                                    signal -> {
+                                        inFlight.remove(key, flight);
+                                        flight.tryEmitEmpty();
+                                    });
+                },
+                NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private Mono<Void> serve(
+            ServerWebExchange exchange, CachedResponse cached, String outcome, String routeId) {
+        count(routeId, outcome);
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.putAll(cached.headers());
+        headers.set("X-Cache", outcome);
+        headers.set(
+                HttpHeaders.AGE,
+                String.valueOf(Duration.ofNanos(System.nanoTime() - cached.storedAt()).toSeconds()));
+
+        String etag = cached.headers().getETag();
+        if (etag != null && exchange.getRequest().getHeaders().getIfNoneMatch().contains(etag)) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            return response.setComplete();
+        }
+        response.setStatusCode(cached.status());
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    private void count(String routeId, String outcome) {
+        meters.counter("gateway.read.cache", "route", routeId, "result", outcome.toLowerCase())
+                .increment();
+    }
+
+    /** Path plus query parameters sorted by name (values keep their order) plus Accept. */
+    static String key(String routeId, ServerHttpRequest request) {
+        StringBuilder key = new StringBuilder(routeId).append(' ').append(request.getPath().value());
+        char sep = '?';
+        for (Map.Entry<String, List<String>> p : new TreeMap<>(request.getQueryParams()).entrySet()) {
+            for (String v : p.getValue()) {
+                key.append(sep).append(p.getKey()).append('=').append(v == null ? "" : v);
+                sep = '&';
+            }
+        }
+        String accept = request.getHeaders().getFirst(HttpHeaders.ACCEPT);
+        return key.append(' ').append(accept == null ? "" : accept).toString();
+    }
+
+    private static boolean skipsStoredCopy(HttpHeaders headers) {
+        String cc = String.join(",", headers.getOrEmpty(HttpHeaders.CACHE_CONTROL)).toLowerCase();
+        return cc.contains("no-cache")
+                || cc.contains("no-store")
+                || cc.matches(".*(?:^|[,\\s])max-age=0(?:$|[,\\s]).*")
+                || headers.getOrEmpty(HttpHeaders.PRAGMA).contains("no-cache");
+    }
+
+    private static boolean conditional(HttpHeaders headers) {
+        return headers.containsKey(HttpHeaders.IF_NONE_MATCH)
+                || headers.containsKey(HttpHeaders.IF_MODIFIED_SINCE);
+    }
+
+    /** May other clients get this response: a full 200 that is not tied to one user. */
+    private static boolean shareable(CachedResponse r) {
+        if (r.status().value() != 200 || r.headers().containsKey(HttpHeaders.SET_COOKIE)) {
+            return false;
+        }
+        String cc = String.join(",", r.headers().getOrEmpty(HttpHeaders.CACHE_CONTROL)).toLowerCase();
+        return !cc.contains("no-store") && !cc.contains("private");
+    }
+
+    /** May a shareable response be stored for later requests. */
+    private static boolean cacheable(CachedResponse r) {
+        String cc = String.join(",", r.headers().getOrEmpty(HttpHeaders.CACHE_CONTROL)).toLowerCase();
+        return !cc.contains("no-cache") && r.expiresAt() > r.storedAt();
+    }
+
+    /** Does the response header belong to one exchange only: never stored or handed on. */
+    static boolean perRequest(String header) {
+        return PER_REQUEST_HEADERS.stream().anyMatch(header::equalsIgnoreCase)
+                || header.regionMatches(true, 0, "X-RateLimit-", 0, "X-RateLimit-".length());
+    }
+
+    /** TTL of the route, shortened by the upstream's s-maxage or max-age. */
+    private static Duration ttl(HttpHeaders headers, Config config) {
+        String cc = String.join(",", headers.getOrEmpty(HttpHeaders.CACHE_CONTROL)).toLowerCase();
+        Duration ttl = config.getTtl();
+        Duration sMaxAge = null;
+        Duration maxAge = null;
+        Matcher m = MAX_AGE.matcher(cc);
+        while (m.find()) {
+            Duration d = Duration.ofSeconds(Long.parseLong(m.group(2)));
+            if (m.group(1).equals("s-maxage")) {
+                sMaxAge = d;
+            } else {
+                maxAge = d;
+            }
+        }
+        Duration upstream = sMaxAge != null ? sMaxAge : maxAge;
+        return upstream != null && upstream.compareTo(ttl) < 0 ? upstream : ttl;
+    }
+
+    /** Passes the upstream body through and keeps a copy of it, up to the route's limit. */
+    private static final class CapturingResponse extends ServerHttpResponseDecorator {
+        private final Config config;
+        private final Consumer<CachedResponse> onCaptured;
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private boolean tooLarge;
+
+        CapturingResponse(
+                ServerHttpResponse delegate,
+                Config config,
+                Consumer<CachedResponse> onCaptured) {
+            super(delegate);
+            this.config = config;
+            this.onCaptured = onCaptured;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            Flux<DataBuffer> tee = Flux.from(body).map(this::keep);
+            return super.writeWith(tee).doOnSuccess(done -> captured());
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return writeWith(Flux.from(body).flatMapSequential(Function.identity()));
+        }
+
+        private DataBuffer keep(DataBuffer buffer) {
+            int n = buffer.readableByteCount();
+            if (!tooLarge && copy.size() + n <= config.getMaxBodySize().toBytes()) {
+                byte[] chunk = new byte[n];
+                buffer.toByteBuffer(buffer.readPosition(), ByteBuffer.wrap(chunk), 0, n);
+                copy.writeBytes(chunk);
+            } else {
+                tooLarge = true;
+            }
+            return buffer;
+        }
+
+        private void captured() {
+            if (tooLarge || getStatusCode() == null) {
+                return;
+            }
+            HttpHeaders headers = new HttpHeaders();
+            getDelegate()
+                    .getHeaders()
+                    .forEach(
+                            (name, values) -> {
+                                if (!perRequest(name)) {
+                                    headers.put(name, values);
+                                }
+                            });
+            long now = System.nanoTime();
+            onCaptured.accept(
+                    new CachedResponse(
+                            getStatusCode(),
+                            HttpHeaders.readOnlyHttpHeaders(headers),
+                            copy.toByteArray(),
+                            now,
+                            now + ttl(headers, config).toNanos()));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.rxlog.gateway.ratelimit;
+
+import java.net.InetSocketAddress;
+import java.security.Principal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.support.ipresolver.RemoteAddressResolver;
+import org.springframework.cloud.gateway.support.ipresolver.XForwardedRemoteAddressResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Rate-limit key of a request: the authenticated principal if there is one, otherwise the client
+ * address. Nothing the client can set freely is used: {@code X-Forwarded-For} only counts through
+ * the {@code gateway.rate-limit.trusted-proxies} hops our own proxies append (0, the default, means
+ * the gateway is reached directly and the peer address is the client).
+ */
+@Component
+public class ClientKeyResolver implements KeyResolver {
+
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final RemoteAddressResolver addresses;
+
+    public ClientKeyResolver(@Value("${gateway.rate-limit.trusted-proxies:0}") int trustedProxies) {
+        this.addresses =
+                trustedProxies > 0
+                        ? XForwardedRemoteAddressResolver.maxTrustedIndex(trustedProxies)
+                        : new RemoteAddressResolver() {};
+    }
+
+    @Override
+    public Mono<String> resolve(ServerWebExchange exchange) {
+        return exchange.getPrincipal()
+                .map(Principal::getName)
+                .filter(name -> !name.isBlank())
+                .map(name -> "user:" + truncate(name))
+                .switchIfEmpty(Mono.fromSupplier(() -> "ip:" + address(exchange)));
+    }
+
+    private String address(ServerWebExchange exchange) {
+        InetSocketAddress remote = addresses.resolve(exchange);
+        return remote != null && remote.getAddress() != null
+                ? remote.getAddress().getHostAddress()
+                : remote != null ? truncate(remote.getHostString()) : "unknown";
+    }
+
+    private static String truncate(String s) {
+        return s.length() > MAX_KEY_LENGTH ? s.substring(0, MAX_KEY_LENGTH) : s;
+    }
+}
@@ -0,0 +1,131 @@
+package com.rxlog.gateway.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * In-memory token bucket for the {@code RequestRateLimiter} filter, one bucket per route and
+ * client key (see {@link ClientKeyResolver}); no Redis involved, so limits apply per gateway
+ * instance. Route settings use the {@code local-rate-limiter.*} args, e.g.
+ *
+ * <pre>
+ * - name: RequestRateLimiter
+ *   args:
+ *     local-rate-limiter.replenish-rate: 10
+ *     local-rate-limiter.burst-capacity: 20
+ * </pre>
+ *
+ * <p>Responses carry the usual {@code X-RateLimit-*} headers, denials also {@code Retry-After} (in
+ * seconds, until enough tokens are back). Denials are counted as {@code
+ * gateway.requests.shed{route,reason=rate}}.
+ */
+@Component
+public class LocalTokenBucketRateLimiter
+        extends AbstractRateLimiter<LocalTokenBucketRateLimiter.Config> {
+
+    public static final String CONFIGURATION_PROPERTY_NAME = "local-rate-limiter";
+
+    public static class Config {
+        /** Tokens added per second. */
+        private int replenishRate = 10;
+        /** Bucket size, i.e. the burst a client may send at once. */
+        private int burstCapacity = 20;
+        /** Tokens one request costs. */
+        private int requestedTokens = 1;
+
+        public int getReplenishRate() {
+            return replenishRate;
+        }
+
+        public void setReplenishRate(int replenishRate) {
+            this.replenishRate = replenishRate;
+        }
+
+        public int getBurstCapacity() {
+            return burstCapacity;
+        }
+
+        public void setBurstCapacity(int burstCapacity) {
+            this.burstCapacity = burstCapacity;
+        }
+
+        public int getRequestedTokens() {
+            return requestedTokens;
+        }
+
+        public void setRequestedTokens(int requestedTokens) {
+            this.requestedTokens = requestedTokens;
+        }
+    }
+
+    /** Refilled lazily on access; the lock is held for a few arithmetic operations only. */
+    static final class Bucket {
+        private double tokens;
+        private long refilledAt;
+
+        Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+
+        /** Takes the tokens and returns 0, or returns the nanos until they would be available. */
+        synchronized long tryConsume(Config c, long now) {
+            double perNano = c.getReplenishRate() / 1e9;
+            tokens = Math.min(c.getBurstCapacity(), tokens + (now - refilledAt) * perNano);
+            refilledAt = now;
+            if (tokens >= c.getRequestedTokens()) {
+                tokens -= c.getRequestedTokens();
+                return 0;
+            }
+            return (long) Math.ceil((c.getRequestedTokens() - tokens) / perNano);
+        }
+
+        synchronized long remaining() {
+            return (long) tokens;
+        }
+    }
+
+    private final Config defaults = new Config();
+    private final Cache<String, Bucket> buckets =
+            Caffeine.newBuilder()
+                    .maximumSize(100_000)
+                    .expireAfterAccess(Duration.ofMinutes(10))
+                    .build();
+    private final MeterRegistry meters;
+
+    public LocalTokenBucketRateLimiter(
+            ConfigurationService configurationService, MeterRegistry meters) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+        this.meters = meters;
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        Config c = getConfig().getOrDefault(routeId, defaults);
+        long now = System.nanoTime();
+        Bucket bucket =
+                buckets.get(routeId + '\u0000' + id, k -> new Bucket(c.getBurstCapacity(), now));
+        long waitNanos = bucket.tryConsume(c, now);
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-RateLimit-Remaining", String.valueOf(bucket.remaining()));
+        headers.put("X-RateLimit-Replenish-Rate", String.valueOf(c.getReplenishRate()));
+        headers.put("X-RateLimit-Burst-Capacity", String.valueOf(c.getBurstCapacity()));
+        headers.put("X-RateLimit-Requested-Tokens", String.valueOf(c.getRequestedTokens()));
+        if (waitNanos > 0) {
+            headers.put(
+                    "Retry-After",
+                    String.valueOf(Math.max(1, (long) Math.ceil(waitNanos / 1e9))));
+            meters.counter("gateway.requests.shed", "route", routeId, "reason", "rate").increment();
+        }
+        return Mono.just(new Response(waitNanos == 0, headers));
+    }
+}
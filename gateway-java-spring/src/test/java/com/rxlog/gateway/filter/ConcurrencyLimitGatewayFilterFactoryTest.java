@@ -0,0 +1,100 @@
+package com.rxlog.gateway.filter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for the adaptive concurrency cap, fed with explicit latency samples. */
+class ConcurrencyLimitGatewayFilterFactoryTest {
+
+    private static final long MS = 1_000_000L;
+
+    private static ConcurrencyLimitGatewayFilterFactory.AdaptiveLimit limit(
+            int initial, int min, int max) {
+        ConcurrencyLimitGatewayFilterFactory.Config c =
+                new ConcurrencyLimitGatewayFilterFactory.Config();
+        c.setInitialLimit(initial);
+        c.setMinLimit(min);
+        c.setMaxLimit(max);
+        return new ConcurrencyLimitGatewayFilterFactory.AdaptiveLimit(c);
+    }
+
+    @Test
+    void steadyLatencyAtFullUse_growsTheLimitByAboutItsSquareRoot() {
+        ConcurrencyLimitGatewayFilterFactory.AdaptiveLimit adaptive = limit(20, 4, 200);
+
+        adaptive.onSample(10 * MS, 20, false);
+
+        // 0.8 * 20 + 0.2 * (20 + sqrt(20))
+        assertEquals(20 + 0.2 * Math.sqrt(20), adaptive.limit(), 1e-9);
+    }
+
+    @Test
+    void samplesAtLowUse_onlyFeedTheAverageLatency() {
+        ConcurrencyLimitGatewayFilterFactory.AdaptiveLimit adaptive = limit(20, 4, 200);
+
+        adaptive.onSample(10 * MS, 9, false);
+
+        assertEquals(20, adaptive.limit(), 1e-9);
+        assertEquals(1, adaptive.retryAfterSeconds());
+    }
+
+    @Test
+    void slowerResponses_shrinkTheLimitAtMostByHalfPerSample() {
+        // Arrange: a long-run latency of 10 ms
+        ConcurrencyLimitGatewayFilterFactory.AdaptiveLimit adaptive = limit(20, 4, 200);
+        adaptive.onSample(10 * MS, 1, false);
+
+        // Act: four times as slow at full use; the average only moves to 11.5 ms
+        adaptive.onSample(40 * MS, 20, false);
+
+        // Assert: the gradient 11.5 / 40 is clamped to 0.5
+        assertEquals(0.8 * 20 + 0.2 * (20 * 0.5 + Math.sqrt(20)), adaptive.limit(), 1e-9);
+    }
+
+    @Test
+    void failures_cutTheLimitByATenthDownToTheMinimum() {
+        ConcurrencyLimitGatewayFilterFactory.AdaptiveLimit adaptive = limit(20, 4, 200);
+
+        adaptive.onSample(5 * MS, 20, true);
+        assertEquals(18, adaptive.limit(), 1e-9);
+
+        for (int i = 0; i < 50; i++) {
+            adaptive.onSample(5 * MS, 20, true);
+        }
+        assertEquals(4, adaptive.limit(), 1e-9);
+    }
+
+    @Test
+    void growth_stopsAtTheMaximum() {
+        ConcurrencyLimitGatewayFilterFactory.AdaptiveLimit adaptive = limit(20, 4, 24);
+
+        for (int i = 0; i < 50; i++) {
+            adaptive.onSample(10 * MS, 24, false);
+        }
+
+        assertEquals(24, adaptive.limit(), 1e-9);
+    }
+
+    @Test
+    void retryAfter_isTheAverageLatencyRoundedUp() {
+        ConcurrencyLimitGatewayFilterFactory.AdaptiveLimit adaptive = limit(20, 4, 200);
+
+        adaptive.onSample(1_500 * MS, 1, false);
+
+        assertEquals(2, adaptive.retryAfterSeconds());
+    }
+
+    @Test
+    void tryAcquire_admitsUpToTheLimitUntilOneIsReleased() {
+        ConcurrencyLimitGatewayFilterFactory.AdaptiveLimit adaptive = limit(2, 1, 10);
+
+        assertEquals(1, adaptive.tryAcquire());
+        assertEquals(2, adaptive.tryAcquire());
+        assertEquals(-1, adaptive.tryAcquire());
+
+        adaptive.release();
+        assertEquals(2, adaptive.tryAcquire());
+        assertEquals(2, adaptive.inFlight());
+    }
+}
@@ -0,0 +1,226 @@
+package com.rxlog.gateway.filter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/** Unit tests for the ReadCache filter, with a stub chain in place of the upstream call. */
+class ReadCacheGatewayFilterFactoryTest {
+
+    private final GatewayFilter filter =
+            new ReadCacheGatewayFilterFactory(new SimpleMeterRegistry(), DataSize.ofMegabytes(1))
+                    .apply(new ReadCacheGatewayFilterFactory.Config());
+
+    /** Upstream stand-in: counts calls and answers 200 with the given body and headers. */
+    private static final class Upstream implements GatewayFilterChain {
+        final AtomicInteger calls = new AtomicInteger();
+        private final String body;
+        private final Consumer<HttpHeaders> headers;
+        private Mono<Void> before = Mono.empty();
+
+        Upstream(String body, Consumer<HttpHeaders> headers) {
+            this.body = body;
+            this.headers = headers;
+        }
+
+        /** Holds every answer back until {@code gate} completes. */
+        Upstream after(Mono<Void> gate) {
+            before = gate;
+            return this;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange) {
+            calls.incrementAndGet();
+            return before.then(
+                    Mono.defer(
+                            () -> {
+                                ServerHttpResponse response = exchange.getResponse();
+                                response.setStatusCode(HttpStatus.OK);
+                                headers.accept(response.getHeaders());
+                                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                                return response.writeWith(
+                                        Mono.just(response.bufferFactory().wrap(bytes)));
+                            }));
+        }
+    }
+
+    private static MockServerWebExchange get(String uri) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(uri));
+    }
+
+    private static String body(MockServerWebExchange exchange) {
+        return exchange.getResponse().getBodyAsString().block();
+    }
+
+    @Test
+    void key_sortsQueryParametersByNameAndKeepsAccept() {
+        String key =
+                ReadCacheGatewayFilterFactory.key(
+                        "books", MockServerHttpRequest.get("/api/books?b=2&a=1&a=0").build());
+
+        assertEquals(
+                key,
+                ReadCacheGatewayFilterFactory.key(
+                        "books", MockServerHttpRequest.get("/api/books?a=1&a=0&b=2").build()));
+        assertNotEquals(
+                key,
+                ReadCacheGatewayFilterFactory.key(
+                        "books", MockServerHttpRequest.get("/api/books?a=0&a=1&b=2").build()));
+        assertNotEquals(
+                key,
+                ReadCacheGatewayFilterFactory.key(
+                        "books",
+                        MockServerHttpRequest.get("/api/books?b=2&a=1&a=0")
+                                .header(HttpHeaders.ACCEPT, "application/x-ndjson")
+                                .build()));
+    }
+
+    @Test
+    void hit_servesTheStoredBodyWithTheRequestsOwnRateLimitHeaders() {
+        // Arrange: the first request is stored with the rate limit headers of its own exchange
+        Upstream upstream =
+                new Upstream(
+                        "[1,2]",
+                        h -> {
+                            h.set("X-RateLimit-Remaining", "9");
+                            h.set(HttpHeaders.RETRY_AFTER, "1");
+                            h.setETag("\"v1\"");
+                        });
+        MockServerWebExchange first = get("/api/books?a=1");
+        filter.filter(first, upstream).block();
+
+        // Act: the rate limiter has already set this request's headers when the cache serves it
+        MockServerWebExchange second = get("/api/books?a=1");
+        second.getResponse().getHeaders().set("X-RateLimit-Remaining", "3");
+        filter.filter(second, upstream).block();
+
+        // Assert
+        assertEquals(1, upstream.calls.get());
+        assertEquals("MISS", first.getResponse().getHeaders().getFirst("X-Cache"));
+        HttpHeaders served = second.getResponse().getHeaders();
+        assertEquals("HIT", served.getFirst("X-Cache"));
+        assertEquals("[1,2]", body(second));
+        assertEquals("3", served.getFirst("X-RateLimit-Remaining"));
+        assertNull(served.getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals("\"v1\"", served.getETag());
+    }
+
+    @Test
+    void hit_withMatchingIfNoneMatch_isAnswered304() {
+        Upstream upstream = new Upstream("[1]", h -> h.setETag("\"v1\""));
+        filter.filter(get("/api/books"), upstream).block();
+
+        MockServerWebExchange revalidate =
+                MockServerWebExchange.from(
+                        MockServerHttpRequest.get("/api/books")
+                                .header(HttpHeaders.IF_NONE_MATCH, "\"v1\""));
+        filter.filter(revalidate, upstream).block();
+
+        assertEquals(1, upstream.calls.get());
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidate.getResponse().getStatusCode());
+    }
+
+    @Test
+    void responsesForOneUser_areNeverStored() {
+        // Arrange
+        Upstream withCookie = new Upstream("[1]", h -> h.add(HttpHeaders.SET_COOKIE, "s=1"));
+        Upstream markedPrivate = new Upstream("[2]", h -> h.setCacheControl("private, max-age=60"));
+
+        // Act
+        for (int i = 0; i < 2; i++) {
+            filter.filter(get("/api/cookie"), withCookie).block();
+            filter.filter(get("/api/private"), markedPrivate).block();
+        }
+
+        // Assert
+        assertEquals(2, withCookie.calls.get());
+        assertEquals(2, markedPrivate.calls.get());
+    }
+
+    @Test
+    void noStoreResponse_isNotStoredButNoCacheRequestStillRefreshes() {
+        Upstream noStore = new Upstream("[1]", h -> h.setCacheControl("no-store"));
+        filter.filter(get("/api/no-store"), noStore).block();
+        filter.filter(get("/api/no-store"), noStore).block();
+        assertEquals(2, noStore.calls.get());
+
+        Upstream plain = new Upstream("[2]", h -> {});
+        filter.filter(get("/api/plain"), plain).block();
+        MockServerWebExchange reload =
+                MockServerWebExchange.from(
+                        MockServerHttpRequest.get("/api/plain")
+                                .header(HttpHeaders.CACHE_CONTROL, "no-cache"));
+        filter.filter(reload, plain).block();
+        assertEquals(2, plain.calls.get());
+        assertEquals("MISS", reload.getResponse().getHeaders().getFirst("X-Cache"));
+    }
+
+    @Test
+    void equalRequestsWhileOneIsUpstream_shareItsResponse() {
+        // Arrange: the upstream answer is held back until both requests are in
+        Sinks.Empty<Void> release = Sinks.empty();
+        Upstream upstream = new Upstream("[42]", h -> {}).after(release.asMono());
+        MockServerWebExchange leader = get("/api/books?q=x");
+        MockServerWebExchange follower = get("/api/books?q=x");
+
+        // Act
+        CompletableFuture<Void> first = filter.filter(leader, upstream).toFuture();
+        CompletableFuture<Void> second = filter.filter(follower, upstream).toFuture();
+        assertFalse(second.isDone());
+        release.tryEmitEmpty();
+        first.join();
+        second.join();
+
+        // Assert
+        assertEquals(1, upstream.calls.get());
+        assertEquals("MISS", leader.getResponse().getHeaders().getFirst("X-Cache"));
+        assertEquals("COALESCED", follower.getResponse().getHeaders().getFirst("X-Cache"));
+        assertEquals("[42]", body(follower));
+    }
+
+    @Test
+    void conditionalRequest_neverJoinsACallInFlight() {
+        Sinks.Empty<Void> release = Sinks.empty();
+        Upstream upstream = new Upstream("[1]", h -> h.setETag("\"v1\"")).after(release.asMono());
+
+        CompletableFuture<Void> leader = filter.filter(get("/api/books"), upstream).toFuture();
+        MockServerWebExchange conditional =
+                MockServerWebExchange.from(
+                        MockServerHttpRequest.get("/api/books")
+                                .header(HttpHeaders.IF_NONE_MATCH, "\"v0\""));
+        CompletableFuture<Void> own = filter.filter(conditional, upstream).toFuture();
+        release.tryEmitEmpty();
+        leader.join();
+        own.join();
+
+        assertEquals(2, upstream.calls.get());
+        assertEquals("BYPASS", conditional.getResponse().getHeaders().getFirst("X-Cache"));
+    }
+
+    @Test
+    void perRequest_coversRateLimitAndExchangeHeadersOnly() {
+        assertTrue(ReadCacheGatewayFilterFactory.perRequest("x-ratelimit-remaining"));
+        assertTrue(ReadCacheGatewayFilterFactory.perRequest(HttpHeaders.RETRY_AFTER));
+        assertTrue(ReadCacheGatewayFilterFactory.perRequest(HttpHeaders.DATE));
+        assertFalse(ReadCacheGatewayFilterFactory.perRequest(HttpHeaders.ETAG));
+        assertFalse(ReadCacheGatewayFilterFactory.perRequest(HttpHeaders.CONTENT_TYPE));
+        assertFalse(ReadCacheGatewayFilterFactory.perRequest(HttpHeaders.SET_COOKIE));
+    }
+}
@@ -0,0 +1,62 @@
+package com.rxlog.gateway.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for the token bucket, driven by explicit nanoTime values. */
+class LocalTokenBucketRateLimiterTest {
+
+    private static final long MS = 1_000_000L;
+
+    private static LocalTokenBucketRateLimiter.Config config(int rate, int burst, int requested) {
+        LocalTokenBucketRateLimiter.Config c = new LocalTokenBucketRateLimiter.Config();
+        c.setReplenishRate(rate);
+        c.setBurstCapacity(burst);
+        c.setRequestedTokens(requested);
+        return c;
+    }
+
+    @Test
+    void fullBucket_allowsTheBurstThenSaysWhenTheNextTokenIsBack() {
+        LocalTokenBucketRateLimiter.Config c = config(10, 3, 1);
+        LocalTokenBucketRateLimiter.Bucket bucket = new LocalTokenBucketRateLimiter.Bucket(3, 0);
+
+        assertEquals(0, bucket.tryConsume(c, 0));
+        assertEquals(0, bucket.tryConsume(c, 0));
+        assertEquals(0, bucket.tryConsume(c, 0));
+        assertEquals(0, bucket.remaining());
+
+        // 10 tokens per second: the next one is 100 ms away, 40 ms later it is 60 ms away
+        assertEquals(100 * MS, bucket.tryConsume(c, 0));
+        assertEquals(60 * MS, bucket.tryConsume(c, 40 * MS));
+        assertEquals(0, bucket.tryConsume(c, 100 * MS));
+    }
+
+    @Test
+    void refill_isProportionalToElapsedTimeAndCappedAtTheBurst() {
+        LocalTokenBucketRateLimiter.Config c = config(10, 3, 1);
+        LocalTokenBucketRateLimiter.Bucket bucket = new LocalTokenBucketRateLimiter.Bucket(0, 0);
+
+        // 250 ms bring back 2.5 tokens: two requests pass, the third waits for the missing half
+        assertEquals(0, bucket.tryConsume(c, 250 * MS));
+        assertEquals(0, bucket.tryConsume(c, 250 * MS));
+        assertEquals(50 * MS, bucket.tryConsume(c, 250 * MS));
+
+        // a long pause refills up to the burst capacity, not beyond
+        assertEquals(0, bucket.tryConsume(c, 60_000 * MS));
+        assertEquals(2, bucket.remaining());
+    }
+
+    @Test
+    void expensiveRequest_waitsForAllItsTokens() {
+        LocalTokenBucketRateLimiter.Config c = config(2, 10, 5);
+        LocalTokenBucketRateLimiter.Bucket bucket = new LocalTokenBucketRateLimiter.Bucket(4, 0);
+
+        // one token short at 2 per second: 500 ms, which isAllowed rounds up to Retry-After: 1
+        assertEquals(500 * MS, bucket.tryConsume(c, 0));
+        assertEquals(4, bucket.remaining());
+        assertEquals(0, bucket.tryConsume(c, 500 * MS));
+        assertEquals(0, bucket.remaining());
+    }
+}
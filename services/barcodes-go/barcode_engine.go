@@ -139,17 +139,9 @@ type BarcodeSystem struct {
 	rules     []SizeRule
 	ranking   []string
 	rankIndex map[string]int
-	used      map[string]struct{}
 }
 
-func NewBarcodeSystem(rules []SizeRule, ranking []string, alreadyUsed []string) *BarcodeSystem {
-	used := make(map[string]struct{}, len(alreadyUsed))
-	for _, c := range alreadyUsed {
-		c = strings.ToLower(strings.TrimSpace(c))
-		if c != "" {
-			used[c] = struct{}{}
-		}
-	}
+func NewBarcodeSystem(rules []SizeRule, ranking []string) *BarcodeSystem {
 	rankIndex := make(map[string]int, len(ranking))
 	for i, s := range ranking {
 		rankIndex[s] = i
@@ -158,7 +150,6 @@ func NewBarcodeSystem(rules []SizeRule, ranking []string, alreadyUsed []string)
 		rules:     rules,
 		ranking:   ranking,
 		rankIndex: rankIndex,
-		used:      used,
 	}
 }
 
@@ -185,51 +176,3 @@ func choosePrefixAndPosition(rule *SizeRule, heightCm float64) (prefix string, p
 	}
 	return rule.HighPrefix, "up"
 }
-
-// NextBarcodeCandidate picks the next free barcode for a given width/height
-// based on the loaded size rules and current usage.
-// Returns code, matching rule, position ("top"/"bottom"/"left"), or an error
-// if no code or rule applies.
-// isSpecialHeight checks if hCm matches one of the "special" heights
-// (e.g. to force a specific edge placement).
-func (bs *BarcodeSystem) NextBarcodeCandidate(widthMm, heightMm int) (code string, rule *SizeRule, position string, err error) {
-	if widthMm <= 0 || heightMm <= 0 {
-		return "", nil, "", fmt.Errorf("width and height must be greater than zero")
-	}
-	wCm := float64(widthMm) / 10.0
-	hCm := float64(heightMm) / 10.0
-
-	r, err := pickRule(bs.rules, wCm)
-	if err != nil {
-		return "", nil, "", err
-	}
-	prefix, pos := choosePrefixAndPosition(r, hCm)
-	if strings.TrimSpace(prefix) == "" {
-		return "", nil, "", fmt.Errorf("no prefix configured for width %.1f cm and height %.1f cm", wCm, hCm)
-	}
-
-	for _, suffix := range bs.ranking {
-		candidate := prefix + suffix
-		key := strings.ToLower(candidate)
-		if _, exists := bs.used[key]; !exists {
-			return candidate, r, pos, nil
-		}
-	}
-
-	return "", nil, "", fmt.Errorf("no free barcode left for prefix %s", prefix)
-}
-
-func (bs *BarcodeSystem) MarkUsed(code string) {
-	code = strings.ToLower(strings.TrimSpace(code))
-	if code != "" {
-		bs.used[code] = struct{}{}
-	}
-}
-
-func (bs *BarcodeSystem) Release(code string) {
-	code = strings.ToLower(strings.TrimSpace(code))
-	if code == "" {
-		return
-	}
-	delete(bs.used, code)
-}
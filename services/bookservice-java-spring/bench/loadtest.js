@@ -0,0 +1,109 @@
+// Platform vs. virtual threads under bursty registration load (k6, https://k6.io).
+//
+//   k6 run -e BASE=http://localhost:8086 --summary-export=platform.json bench/loadtest.js
+//   # restart the bookservice with SPRING_PROFILES_ACTIVE=virtual
+//   k6 run -e BASE=http://localhost:8086 --summary-export=virtual.json bench/loadtest.js
+//
+// Compare http_reqs (throughput) and the p(95)/p(99) of http_req_duration per scenario tag.
+// Run against a throwaway database: every iteration of "register" inserts a book and
+// "assign" consumes barcodes. With virtual threads, watch jvm_threads_virtual_pinned and
+// hikaricp_connections_pending on /actuator/prometheus while the test runs.
+//
+// Results: none yet. This script has not been run; k6 was not available where it was written,
+// so there are no platform vs. virtual numbers to compare against. The virtual profile keeps
+// Hikari's defaults (10 connections, 30 s connection timeout) until a run shows what to size the
+// pool to; hikaricp_connections_pending is the number to watch for that.
+
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE = __ENV.BASE || 'http://localhost:8086';
+const JSON_HEADERS = { headers: { 'Content-Type': 'application/json' } };
+
+export const options = {
+  scenarios: {
+    // bursts well above Tomcat's 200 platform threads
+    register: {
+      executor: 'ramping-arrival-rate',
+      exec: 'register',
+      startRate: 50,
+      timeUnit: '1s',
+      preAllocatedVUs: 200,
+      maxVUs: 2000,
+      stages: [
+        { target: 50, duration: '30s' },
+        { target: 800, duration: '10s' },
+        { target: 800, duration: '30s' },
+        { target: 50, duration: '10s' },
+        { target: 50, duration: '30s' },
+      ],
+      tags: { scenario: 'register' },
+    },
+    search: {
+      executor: 'constant-arrival-rate',
+      exec: 'search',
+      rate: 100,
+      timeUnit: '1s',
+      duration: '110s',
+      preAllocatedVUs: 50,
+      maxVUs: 500,
+      tags: { scenario: 'search' },
+    },
+    assign: {
+      executor: 'constant-arrival-rate',
+      exec: 'assign',
+      rate: 20,
+      timeUnit: '1s',
+      duration: '110s',
+      preAllocatedVUs: 20,
+      maxVUs: 200,
+      tags: { scenario: 'assign' },
+    },
+  },
+  thresholds: {
+    'http_req_failed{scenario:search}': ['rate<0.01'],
+  },
+};
+
+export function register() {
+  const n = `${__VU}-${__ITER}-${Date.now()}`;
+  const res = http.post(
+    `${BASE}/api/register/book`,
+    JSON.stringify({
+      author: `Load Author ${__VU % 500}`,
+      publisher: 'Load Verlag',
+      pages: 200,
+      titleKeyword: `Last${__ITER % 97}`,
+      titleKeywordPosition: 1,
+      width: 120,
+      height: 190,
+      readingStatus: 'in_progress',
+      topBook: false,
+      barcode: `lt${n}`,
+    }),
+    JSON_HEADERS,
+  );
+  check(res, { registered: (r) => r.status === 200 || r.status === 201 });
+}
+
+const FILTERS = [
+  'readingStatus=in_progress&topBook=true',
+  'author=Load%20Author%2042',
+  'title=Last1',
+  '',
+];
+
+export function search() {
+  const q = FILTERS[__ITER % FILTERS.length];
+  const res = http.get(`${BASE}/api/register/books?limit=20&${q}`);
+  check(res, { ok: (r) => r.status === 200 });
+}
+
+export function assign() {
+  const res = http.post(
+    `${BASE}/api/barcodes/assignForDimensions`,
+    JSON.stringify({ widthCm: 10 + (__ITER % 5) * 0.1, heightCm: 18 }),
+    JSON_HEADERS,
+  );
+  check(res, { answered: (r) => r.status === 200 || r.status === 409 });
+}
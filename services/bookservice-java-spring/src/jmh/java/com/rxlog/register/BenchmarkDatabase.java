@@ -0,0 +1,129 @@
+package com.rxlog.register;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.Properties;
+import javax.sql.DataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Postgres for the benchmarks, one per forked JVM: a Testcontainers postgres:16 by default, or the
+ * database in JMH_JDBC_URL / JMH_JDBC_USER / JMH_JDBC_PASSWORD (use a scratch database, rows are
+ * added to it). The schema comes from the regular Flyway migrations.
+ *
+ * <p>The catalog is generated from the row number alone (no randomness, fixed timestamps), so every
+ * run and every release benchmarks the same data. JMH_CATALOG_SIZE sets the number of books
+ * (default 100000), each with one barcode {@code bk0000001...}.
+ */
+public final class BenchmarkDatabase {
+
+  public static final int CATALOG_SIZE =
+      Integer.parseInt(System.getenv().getOrDefault("JMH_CATALOG_SIZE", "100000"));
+
+  private static BenchmarkDatabase instance;
+
+  private final PostgreSQLContainer<?> container;
+  private final HikariConfig config;
+  private final HikariDataSource dataSource;
+  private final JdbcTemplate jdbc;
+
+  public static synchronized BenchmarkDatabase get() {
+    if (instance == null) {
+      instance = new BenchmarkDatabase();
+    }
+    return instance;
+  }
+
+  private BenchmarkDatabase() {
+    HikariConfig cfg = new HikariConfig();
+    String url = System.getenv("JMH_JDBC_URL");
+    if (url != null) {
+      container = null;
+      cfg.setJdbcUrl(url);
+      cfg.setUsername(System.getenv().getOrDefault("JMH_JDBC_USER", "rxlog"));
+      cfg.setPassword(System.getenv().getOrDefault("JMH_JDBC_PASSWORD", "rxlog"));
+    } else {
+      container = new PostgreSQLContainer<>("postgres:16-alpine");
+      container.start();
+      cfg.setJdbcUrl(container.getJdbcUrl());
+      cfg.setUsername(container.getUsername());
+      cfg.setPassword(container.getPassword());
+    }
+    cfg.setMaximumPoolSize(16);
+    config = cfg;
+    dataSource = new HikariDataSource(cfg);
+    jdbc = new JdbcTemplate(dataSource);
+
+    Flyway.configure()
+        .dataSource(dataSource)
+        .locations("classpath:db/migration")
+        .baselineOnMigrate(true)
+        .load()
+        .migrate();
+    seed();
+  }
+
+  private void seed() {
+    Integer present =
+        jdbc.queryForObject(
+            "select count(*) from books where author like 'Bench Author %'", Integer.class);
+    if (present != null && present >= CATALOG_SIZE) {
+      return;
+    }
+    jdbc.update(
+        """
+            insert into books (
+                id, author, publisher, pages,
+                title_keyword, title_keyword_position,
+                title_keyword2, title_keyword2_position,
+                width, height, reading_status, top_book,
+                registered_at, reading_status_updated_at
+            )
+            select md5('bench-book-' || i)::uuid,
+                   'Bench Author ' || (i % 2000),
+                   'Bench Verlag ' || (i % 150),
+                   80 + i % 700,
+                   (array['Sommer','Winter','Haus','Reise','Nacht','Garten','Meer','Stadt'])
+                     [1 + i % 8] || (i % 97), 1,
+                   case when i % 3 = 0 then 'Zeit' || (i % 53) end,
+                   case when i % 3 = 0 then 2 end,
+                   100 + i % 150, 170 + i % 120,
+                   (array['in_progress','finished','abandoned'])[1 + i % 3],
+                   i % 10 = 0,
+                   timestamptz '2020-01-01 00:00:00+00' + i * interval '1 minute',
+                   timestamptz '2020-01-01 00:00:00+00' + i * interval '1 minute'
+            from generate_series(1, ?) as i
+            on conflict (id) do nothing
+            """,
+        CATALOG_SIZE);
+    jdbc.update(
+        """
+            insert into book_barcodes (book_id, barcode)
+            select md5('bench-book-' || i)::uuid, 'bk' || lpad(i::text, 7, '0')
+            from generate_series(1, ?) as i
+            on conflict (book_id, barcode) do nothing
+            """,
+        CATALOG_SIZE);
+    jdbc.execute("analyze books");
+    jdbc.execute("analyze book_barcodes");
+  }
+
+  public DataSource dataSource() {
+    return dataSource;
+  }
+
+  public JdbcTemplate jdbc() {
+    return jdbc;
+  }
+
+  /** A separate pool on the same database with extra PgJDBC properties; the caller closes it. */
+  public HikariDataSource dataSource(Properties driverProperties) {
+    HikariConfig cfg = new HikariConfig();
+    config.copyStateTo(cfg);
+    cfg.setPoolName(null);
+    cfg.setDataSourceProperties(driverProperties);
+    return new HikariDataSource(cfg);
+  }
+}
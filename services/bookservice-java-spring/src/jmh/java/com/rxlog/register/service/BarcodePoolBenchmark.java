@@ -0,0 +1,172 @@
+package com.rxlog.register.service;
+
+import com.rxlog.register.BenchmarkDatabase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * {@link BarcodePool#claim} with warm shards ({@code pool}) against the set-based fallback alone
+ * ({@code table}), on 1, 4 and 16 threads. Claims consume stock, so every thread claims a fixed
+ * batch of {@value #CLAIMS} codes per iteration, timed as a whole, and the whole stock is reset
+ * before the next one. Each thread walks all prefixes of the size rules in turn, starting at its
+ * own, so threads meet on the same shards and candidate rows without draining any of them (16
+ * threads take 2400 of the roughly 13500 codes per iteration). The {@code claimStacks} variants
+ * take the same {@value #CLAIMS} codes per thread as stacks of {@value #STACK}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = BarcodePoolBenchmark.CLAIMS)
+@Measurement(iterations = 20, batchSize = BarcodePoolBenchmark.CLAIMS)
+public class BarcodePoolBenchmark {
+
+  static final int CLAIMS = 150;
+
+  static final int STACK = 50;
+
+  @Param({"pool", "table"})
+  String mode;
+
+  private JdbcTemplate jdbc;
+  private BarcodePool pool;
+  private List<SizeRules.Placement> placements;
+  private String[] codes;
+
+  /** Where a thread claims next; successive claims go to successive prefixes. */
+  @State(Scope.Thread)
+  public static class Claimer {
+    private int next;
+
+    @Setup
+    public void setUp(ThreadParams thread) {
+      next = thread.getThreadIndex();
+    }
+
+    SizeRules.Placement next(List<SizeRules.Placement> placements) {
+      return placements.get(next++ % placements.size());
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    jdbc = BenchmarkDatabase.get().jdbc();
+    SizeRuleEngine rules =
+        new SizeRuleEngine(
+            configFile("sizerules.csv").toString(), configFile("barcode-ranking.txt").toString());
+
+    placements = new ArrayList<>();
+    List<String> all = new ArrayList<>();
+    Map<String, List<String>> byPrefix = new TreeMap<>(rules.current().candidatesByPrefix());
+    for (Map.Entry<String, List<String>> e : byPrefix.entrySet()) {
+      placements.add(new SizeRules.Placement(null, e.getKey(), null, e.getValue()));
+      all.addAll(e.getValue());
+    }
+    codes = all.toArray(new String[0]);
+    jdbc.update(
+        """
+            insert into public.barcodes (code) select unnest(?::text[])
+            on conflict (code) do nothing
+            """,
+        (Object) codes);
+
+    // "table" never gets a shard: the refresh task is dropped, so every claim takes the fallback
+    pool =
+        new BarcodePool(
+            jdbc,
+            rules,
+            "pool".equals(mode) ? Runnable::run : task -> {},
+            8,
+            24,
+            new SimpleMeterRegistry());
+  }
+
+  @Setup(Level.Iteration)
+  public void restock() {
+    jdbc.update(
+        "update public.barcodes set is_available = true where code = any(?::text[])",
+        (Object) codes);
+    if ("pool".equals(mode)) {
+      pool.refresh();
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public String claim(Claimer claimer) {
+    return pool.claim(claimer.next(placements));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public String claim4Threads(Claimer claimer) {
+    return pool.claim(claimer.next(placements));
+  }
+
+  @Benchmark
+  @Threads(16)
+  public String claim16Threads(Claimer claimer) {
+    return pool.claim(claimer.next(placements));
+  }
+
+  @Benchmark
+  @Threads(1)
+  @Warmup(iterations = 5, batchSize = 1)
+  @Measurement(iterations = 20, batchSize = 1)
+  public void claimStacks(Claimer claimer, Blackhole bh) {
+    claimStacks(claimer, bh, CLAIMS / STACK);
+  }
+
+  @Benchmark
+  @Threads(4)
+  @Warmup(iterations = 5, batchSize = 1)
+  @Measurement(iterations = 20, batchSize = 1)
+  public void claimStacks4Threads(Claimer claimer, Blackhole bh) {
+    claimStacks(claimer, bh, CLAIMS / STACK);
+  }
+
+  @Benchmark
+  @Threads(16)
+  @Warmup(iterations = 5, batchSize = 1)
+  @Measurement(iterations = 20, batchSize = 1)
+  public void claimStacks16Threads(Claimer claimer, Blackhole bh) {
+    claimStacks(claimer, bh, CLAIMS / STACK);
+  }
+
+  private void claimStacks(Claimer claimer, Blackhole bh, int stacks) {
+    for (int i = 0; i < stacks; i++) {
+      bh.consume(pool.claim(claimer.next(placements), STACK));
+    }
+  }
+
+  /** config/ of the repository, looked up from the working directory of the forked JVM. */
+  private static Path configFile(String name) {
+    for (Path dir = Path.of("").toAbsolutePath(); dir != null; dir = dir.getParent()) {
+      Path candidate = dir.resolve("config").resolve(name);
+      if (Files.isRegularFile(candidate)) {
+        return candidate;
+      }
+    }
+    throw new IllegalStateException("config/" + name + " not found above the working directory");
+  }
+}
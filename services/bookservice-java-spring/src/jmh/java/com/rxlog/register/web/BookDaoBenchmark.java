@@ -0,0 +1,209 @@
+package com.rxlog.register.web;
+
+import com.rxlog.register.BenchmarkDatabase;
+import com.rxlog.register.api.RegisterBookRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Hot paths of {@link BookDao} against the seeded catalog of {@link BenchmarkDatabase}. Writes and
+ * the full-text search run in a {@link TransactionTemplate}, as they would behind the
+ * {@code @Transactional} proxy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BookDaoBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Catalog {
+    BookDao dao;
+    TransactionTemplate tx;
+
+    @Setup
+    public void setUp() {
+      BenchmarkDatabase db = BenchmarkDatabase.get();
+      dao = new BookDao(db.jdbc(), event -> {}, new SimpleMeterRegistry());
+      tx = new TransactionTemplate(new DataSourceTransactionManager(db.dataSource()));
+    }
+  }
+
+  /** 100 search rows held in a scrollable result set, so only the mapping is measured. */
+  @State(Scope.Thread)
+  public static class Rows {
+    Connection connection;
+    Statement statement;
+    ResultSet rs;
+
+    @Setup
+    public void setUp() throws SQLException {
+      connection = BenchmarkDatabase.get().dataSource().getConnection();
+      statement =
+          connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+      rs =
+          statement.executeQuery(
+              "select "
+                  + BookDao.SEARCH_COLUMNS
+                  + " from books b order by b.registered_at desc, b.id desc limit 100");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+      rs.close();
+      statement.close();
+      connection.close();
+    }
+  }
+
+  /** The search of {@link BookDao} on books or on book_search_view (V114). */
+  @State(Scope.Benchmark)
+  public static class Filters {
+    @Param({"none", "author", "title", "status_top", "barcode", "deep_page"})
+    String filters;
+
+    @Param({"books", "projection"})
+    String source;
+
+    BookDao dao;
+
+    String author;
+    String title;
+    String barcode;
+    String readingStatus;
+    Boolean topBook;
+    BookSearchCursor after;
+
+    @Setup
+    public void setUp() {
+      BenchmarkDatabase db = BenchmarkDatabase.get();
+      dao =
+          new BookDao(
+              db.jdbc(), event -> {}, new SimpleMeterRegistry(), "projection".equals(source));
+      switch (filters) {
+        case "author" -> author = "Bench Author 42";
+        case "title" -> title = "Garten1";
+        case "status_top" -> {
+          readingStatus = "in_progress";
+          topBook = Boolean.TRUE;
+        }
+        case "barcode" -> barcode = "bk0004242";
+        case "deep_page" ->
+            // row CATALOG_SIZE / 2 by construction of the seed
+            after =
+                new BookSearchCursor(
+                    Instant.parse("2020-01-01T00:00:00Z")
+                        .plusSeconds(60L * (BenchmarkDatabase.CATALOG_SIZE / 2)),
+                    UUID.fromString("ffffffff-ffff-ffff-ffff-ffffffffffff"));
+        default -> {}
+      }
+    }
+  }
+
+  /** Full-text queries of different match counts: ~130, ~700 and every book. */
+  @State(Scope.Benchmark)
+  public static class TextQuery {
+    @Param({"Garten17", "Bench Author 42", "Bench"})
+    String q;
+  }
+
+  /** A book of its own per thread whose barcodes alternate between two half-overlapping sets. */
+  @State(Scope.Thread)
+  public static class Barcodes {
+    @Param({"1", "10", "100"})
+    int count;
+
+    String bookId;
+    BookUpdateRequest[] updates;
+    int next;
+
+    @Setup
+    public void setUp(Catalog catalog) {
+      String tag = UUID.randomUUID().toString().substring(0, 8);
+      bookId = catalog.dao.insert(request("pu" + tag + "-seed"));
+      updates = new BookUpdateRequest[] {update(tag, 0), update(tag, count / 2)};
+    }
+
+    private BookUpdateRequest update(String tag, int offset) {
+      List<String> codes = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        codes.add("pu" + tag + "-" + (offset + i));
+      }
+      BookUpdateRequest req = new BookUpdateRequest();
+      req.setBarcodes(codes);
+      return req;
+    }
+  }
+
+  private static final AtomicLong INSERTED = new AtomicLong();
+
+  @Benchmark
+  public void mapRow(Rows rows, Blackhole bh) throws SQLException {
+    ResultSet rs = rows.rs;
+    rs.beforeFirst();
+    while (rs.next()) {
+      bh.consume(BookDao.mapRow(rs));
+    }
+  }
+
+  @Benchmark
+  public List<BookSearchResult> search(Filters f) {
+    return f.dao.search(
+        f.author, null, f.title, f.barcode, f.readingStatus, f.topBook, f.after, 50);
+  }
+
+  @Benchmark
+  public BookFullTextPage fullText(Catalog catalog, TextQuery t) {
+    return catalog.dao.fullText(t.q, null, null, 20);
+  }
+
+  @Benchmark
+  public boolean partialUpdate(Catalog catalog, Barcodes b) {
+    BookUpdateRequest req = b.updates[b.next];
+    b.next ^= 1;
+    return catalog.tx.execute(s -> catalog.dao.partialUpdate(b.bookId, req));
+  }
+
+  @Benchmark
+  public String insert(Catalog catalog) {
+    String barcode = "ins" + INSERTED.incrementAndGet() + "-" + System.nanoTime();
+    return catalog.tx.execute(s -> catalog.dao.insert(request(barcode)));
+  }
+
+  private static RegisterBookRequest request(String barcode) {
+    return new RegisterBookRequest(
+        "Bench Insert",
+        "Bench Verlag",
+        240,
+        "Benchmark",
+        1,
+        null,
+        null,
+        null,
+        null,
+        130,
+        205,
+        "in_progress",
+        false,
+        barcode);
+  }
+}
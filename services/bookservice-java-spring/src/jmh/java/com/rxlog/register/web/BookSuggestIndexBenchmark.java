@@ -0,0 +1,52 @@
+package com.rxlog.register.web;
+
+import com.rxlog.register.BenchmarkDatabase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+/**
+ * {@link BookSuggestIndex#suggest} built from the seeded catalog of {@link BenchmarkDatabase}, for
+ * prefixes from one letter (thousands of candidate values) to nearly a whole value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BookSuggestIndexBenchmark {
+
+  @Param({"author:b", "author:bench author 1", "keyword:g", "keyword:garten4"})
+  String query;
+
+  private BookSuggestIndex index;
+  private BookSuggestIndex.Field field;
+  private String prefix;
+
+  @Setup
+  public void setUp() {
+    BenchmarkDatabase db = BenchmarkDatabase.get();
+    index =
+        new BookSuggestIndex(
+            db.jdbc(),
+            new DataSourceTransactionManager(db.dataSource()),
+            Runnable::run,
+            new SimpleMeterRegistry());
+    index.build();
+    String[] parts = query.split(":", 2);
+    field = BookSuggestIndex.Field.parse(parts[0]);
+    prefix = parts[1];
+  }
+
+  @Benchmark
+  public List<BookSuggestIndex.Suggestion> suggest() {
+    return index.suggest(field, prefix, 10);
+  }
+}
@@ -0,0 +1,73 @@
+package com.rxlog.register.web;
+
+import com.rxlog.register.BenchmarkDatabase;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Parse and plan time of the search statements: the same {@link BookDao#search} calls over pools
+ * that never prepare on the server ({@code unprepared}, prepareThreshold=0), prepare from the first
+ * call under the default plan_cache_mode ({@code prepared}), or from the first call with a fresh
+ * custom plan each time ({@code custom}, plan_cache_mode=force_custom_plan) or one generic plan
+ * ({@code generic}, plan_cache_mode=force_generic_plan). The difference to {@code unprepared} is
+ * the time saved.
+ *
+ * <p>The filters are selective, so execution stays small next to planning. {@code shape} only
+ * builds the statement and its arguments, the per-call cost left on the Java side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchPlanBenchmark {
+
+  @Param({"unprepared", "prepared", "custom", "generic"})
+  String plan;
+
+  private HikariDataSource dataSource;
+  private BookDao dao;
+
+  @Setup
+  public void setUp() {
+    Properties props = new Properties();
+    props.setProperty("prepareThreshold", "unprepared".equals(plan) ? "0" : "1");
+    if (!"unprepared".equals(plan) && !"prepared".equals(plan)) {
+      props.setProperty("options", "-c plan_cache_mode=force_" + plan + "_plan");
+    }
+    dataSource = BenchmarkDatabase.get().dataSource(props);
+    dao = new BookDao(new JdbcTemplate(dataSource), event -> {}, new SimpleMeterRegistry());
+  }
+
+  @TearDown
+  public void tearDown() {
+    dataSource.close();
+  }
+
+  @Benchmark
+  public List<BookSearchResult> barcode() {
+    return dao.search(null, null, null, "bk0004242", null, null, null, 20);
+  }
+
+  @Benchmark
+  public List<BookSearchResult> authorStatusTop() {
+    return dao.search("Bench Author 42", null, null, null, "in_progress", Boolean.TRUE, null, 20);
+  }
+
+  @Benchmark
+  public BookDao.SearchQuery shape() {
+    return BookDao.searchQuery(
+        false, "Bench Author 42", null, "Garten", null, "finished", null, null, 20);
+  }
+}
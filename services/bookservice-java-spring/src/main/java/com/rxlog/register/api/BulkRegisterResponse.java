@@ -0,0 +1,12 @@
+package com.rxlog.register.api;
+
+import java.util.List;
+
+/**
+ * Antwort auf /api/register/books:bulk. Rows are numbered from 1 in input order (CSV header not
+ * counted); every row that was not registered appears in {@code errors}.
+ */
+public record BulkRegisterResponse(int received, int registered, List<RowError> errors) {
+
+  public record RowError(int row, List<String> errors) {}
+}
@@ -1,7 +1,14 @@
 // services/bookservice-java-spring/src/main/java/com/rxlog/register/api/RegisterController.java
 package com.rxlog.register.api;
 
+import com.rxlog.register.service.BulkRegisterService;
 import com.rxlog.register.service.RegisterBookService;
+import com.rxlog.register.service.RegisterIdempotency;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -11,9 +18,16 @@ import org.springframework.web.bind.annotation.*;
 public class RegisterController {
 
   private final RegisterBookService service;
+  private final BulkRegisterService bulkService;
+  private final RegisterIdempotency idempotency;
 
-  public RegisterController(RegisterBookService service) {
+  public RegisterController(
+      RegisterBookService service,
+      BulkRegisterService bulkService,
+      RegisterIdempotency idempotency) {
     this.service = service;
+    this.bulkService = bulkService;
+    this.idempotency = idempotency;
   }
 
   @PostMapping("/draft")
@@ -21,9 +35,40 @@ public class RegisterController {
     return ResponseEntity.ok(service.createDraft(req));
   }
 
+  /**
+   * With an {@code Idempotency-Key} header, retries of the same request return the original
+   * response instead of registering the book again; see {@link RegisterIdempotency}.
+   */
   @PostMapping("/book")
-  public ResponseEntity<RegisterBookResponse> registerBook(@RequestBody RegisterBookRequest req) {
-    RegisterBookResponse res = service.registerBook(req);
+  public ResponseEntity<?> registerBook(
+      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+      @RequestBody RegisterBookRequest req) {
+    if (idempotencyKey == null) {
+      return ResponseEntity.ok(service.registerBook(req));
+    }
+    String key = idempotencyKey.trim();
+    if (key.isEmpty() || key.length() > 255) {
+      return ResponseEntity.badRequest().body(Map.of("error", "invalid_idempotency_key"));
+    }
+    try {
+      return ResponseEntity.ok(idempotency.execute(key, req, () -> service.registerBook(req)));
+    } catch (RegisterIdempotency.KeyReusedException e) {
+      return ResponseEntity.unprocessableEntity()
+          .body(Map.of("error", "idempotency_key_reused", "message", e.getMessage()));
+    }
+  }
+
+  /** Bulk registration from an NDJSON or CSV stream; see {@link BulkRegisterService}. */
+  @PostMapping(
+      value = "/books:bulk",
+      consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+  public ResponseEntity<BulkRegisterResponse> registerBooksBulk(
+      @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body)
+      throws IOException {
+    BulkRegisterResponse res =
+        contentType.isCompatibleWith(MediaType.APPLICATION_NDJSON)
+            ? bulkService.registerNdjson(body)
+            : bulkService.registerCsv(body);
     return ResponseEntity.ok(res);
   }
 }
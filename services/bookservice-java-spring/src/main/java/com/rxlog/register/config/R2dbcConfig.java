@@ -0,0 +1,57 @@
+package com.rxlog.register.config;
+
+import static io.r2dbc.spi.ConnectionFactoryOptions.PASSWORD;
+import static io.r2dbc.spi.ConnectionFactoryOptions.USER;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import java.time.Duration;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * Non-blocking connections for the streaming search, pointed at the same database as the JDBC
+ * datasource (jdbc:postgresql://... becomes r2dbc:postgresql://...). The driver runs on a small,
+ * fixed set of event-loop threads however many streams are open.
+ *
+ * <p>The pool is deliberately not a bean: Boot treats a ConnectionFactory bean as "this is an R2DBC
+ * application" and would back off from the JDBC DataSource everything else uses.
+ */
+@Configuration
+public class R2dbcConfig implements DisposableBean {
+
+  private ConnectionPool pool;
+
+  @Bean
+  public DatabaseClient databaseClient(
+      @Value("${spring.datasource.url}") String jdbcUrl,
+      @Value("${spring.datasource.username}") String username,
+      @Value("${spring.datasource.password}") String password,
+      @Value("${book.r2dbc.pool-size:8}") int poolSize) {
+    ConnectionFactoryOptions options =
+        ConnectionFactoryOptions.parse(jdbcUrl.replaceFirst("^jdbc:", "r2dbc:"))
+            .mutate()
+            .option(USER, username)
+            .option(PASSWORD, password)
+            .build();
+    pool =
+        new ConnectionPool(
+            ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .maxSize(poolSize)
+                .maxIdleTime(Duration.ofMinutes(10))
+                .build());
+    return DatabaseClient.create(pool);
+  }
+
+  @Override
+  public void destroy() {
+    if (pool != null) {
+      pool.dispose();
+    }
+  }
+}
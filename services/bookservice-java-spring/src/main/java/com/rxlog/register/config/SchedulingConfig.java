@@ -0,0 +1,9 @@
+package com.rxlog.register.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/** Enables @Scheduled background jobs (e.g. the barcode pool reconcile). */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {}
@@ -0,0 +1,69 @@
+package com.rxlog.register.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * In virtual-thread mode, streams JFR's jdk.VirtualThreadPinned events: every time a virtual thread
+ * blocks while pinned to its carrier (inside synchronized or native code) for longer than the
+ * threshold, the top frame is logged and {@code jvm.threads.virtual.pinned} is incremented.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+  private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+  private final RecordingStream stream = new RecordingStream();
+
+  public VirtualThreadPinningMonitor(
+      MeterRegistry meters, @Value("${threads.pinning.threshold-ms:20}") long thresholdMs) {
+    Counter pinned =
+        Counter.builder("jvm.threads.virtual.pinned")
+            .description("Virtual threads that blocked while pinned to their carrier")
+            .register(meters);
+    stream
+        .enable("jdk.VirtualThreadPinned")
+        .withThreshold(Duration.ofMillis(thresholdMs))
+        .withStackTrace();
+    stream.onEvent(
+        "jdk.VirtualThreadPinned",
+        event -> {
+          pinned.increment();
+          log.warn(
+              "Virtual thread pinned for {} ms at {}",
+              event.getDuration().toMillis(),
+              where(event));
+        });
+    stream.startAsync();
+  }
+
+  private static String where(RecordedEvent event) {
+    if (event.getStackTrace() == null) {
+      return "?";
+    }
+    // skip the JDK's own parking frames
+    for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+      String type = frame.getMethod().getType().getName();
+      if (!type.startsWith("java.") && !type.startsWith("jdk.")) {
+        return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+      }
+    }
+    return "?";
+  }
+
+  @PreDestroy
+  public void close() {
+    stream.close();
+  }
+}
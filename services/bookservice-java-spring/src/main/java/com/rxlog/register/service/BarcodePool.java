@@ -0,0 +1,367 @@
+package com.rxlog.register.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory pools of available barcodes, one shard per prefix, in ranking order.
+ *
+ * <p>Claiming takes the next slot of the shard with a single atomic increment, so concurrent
+ * assignments for the same size group never wait on each other or on the same candidate row. The
+ * slot is then made durable with a conditional update of that one row; if another instance (or a
+ * stale shard) got the code first, the update hits zero rows and the next slot is tried. The
+ * database therefore stays the arbiter and a code is never handed out twice.
+ *
+ * <p>Every claim stamps {@code updated_at}, which {@link #reconcile} uses to tell a code that is
+ * about to be attached from one that was never used.
+ *
+ * <p>Shards are rebuilt from {@code barcodes where is_available} in the background: periodically,
+ * and early when a shard runs low or is missing. Until a shard exists, claims fall back to a single
+ * set-based statement against the table.
+ *
+ * <p>{@code barcode.stock.available{size_group,prefix,position}} reports what is left per shard:
+ * the stock of the last refresh minus the claims made through this instance since.
+ */
+@Component
+public class BarcodePool {
+
+  private static final Logger log = LoggerFactory.getLogger(BarcodePool.class);
+
+  /** Claims the first available candidate straight from the table (ranking order). */
+  private static final String CLAIM_SQL =
+      """
+          update public.barcodes set is_available = false, updated_at = now()
+          where code = (
+            select b.code
+            from unnest(?::text[]) with ordinality as c(code, rank)
+            join public.barcodes b on b.code = c.code
+            where b.is_available
+            order by c.rank
+            limit 1
+            for update of b skip locked
+          )
+          returning code
+          """;
+
+  private static final String CLAIM_ONE_SQL =
+      "update public.barcodes set is_available = false, updated_at = now() where code = ? and is_available";
+
+  /** Like {@link #CLAIM_SQL}, for the first {@code n} available candidates. */
+  private static final String CLAIM_MANY_SQL =
+      """
+          update public.barcodes set is_available = false, updated_at = now()
+          where code in (
+            select b.code
+            from unnest(?::text[]) with ordinality as c(code, rank)
+            join public.barcodes b on b.code = c.code
+            where b.is_available
+            order by c.rank
+            limit ?
+            for update of b skip locked
+          )
+          returning code
+          """;
+
+  private static final String CLAIM_SLOTS_SQL =
+      """
+          update public.barcodes set is_available = false, updated_at = now()
+          where code = any(?::text[]) and is_available
+          returning code
+          """;
+
+  /** One prefix worth of available codes; slots are handed out by a lock-free cursor. */
+  static final class Shard {
+    private final String[] codes;
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    Shard(String[] codes) {
+      this.codes = codes;
+    }
+
+    /** Next unclaimed code of this shard, or null when it is used up. */
+    String next() {
+      int i = cursor.getAndIncrement();
+      return i < codes.length ? codes[i] : null;
+    }
+
+    /** Up to {@code n} next unclaimed codes of this shard, in order; empty when used up. */
+    List<String> next(int n) {
+      int from = cursor.getAndAdd(n);
+      if (from >= codes.length) {
+        return List.of();
+      }
+      return Arrays.asList(codes).subList(from, Math.min(from + n, codes.length));
+    }
+
+    int remaining() {
+      return Math.max(0, codes.length - cursor.get());
+    }
+
+    /** True if the table had no stock for this prefix when the shard was built. */
+    boolean builtEmpty() {
+      return codes.length == 0;
+    }
+  }
+
+  private final JdbcTemplate jdbc;
+  private final SizeRuleEngine sizeRules;
+  private final TaskExecutor executor;
+  private final int lowWatermark;
+  private final int claimGraceHours;
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+  private final MultiGauge stock;
+
+  private volatile Map<String, Shard> shards = Map.of();
+
+  public BarcodePool(
+      JdbcTemplate jdbc,
+      SizeRuleEngine sizeRules,
+      @Qualifier("applicationTaskExecutor") TaskExecutor executor,
+      @Value("${barcode.pool.low-watermark:8}") int lowWatermark,
+      @Value("${barcode.pool.claim-grace-hours:24}") int claimGraceHours,
+      MeterRegistry meters) {
+    this.jdbc = jdbc;
+    this.sizeRules = sizeRules;
+    this.executor = executor;
+    this.lowWatermark = lowWatermark;
+    this.claimGraceHours = claimGraceHours;
+    this.stock =
+        MultiGauge.builder("barcode.stock.available")
+            .description("Available barcodes per prefix as seen by the pool")
+            .register(meters);
+  }
+
+  /** Claims the best available code for the placement, or returns null if it has no stock. */
+  public String claim(SizeRules.Placement placement) {
+    Shard shard = shards.get(placement.prefix());
+    if (shard != null) {
+      String code;
+      while ((code = shard.next()) != null) {
+        if (jdbc.update(CLAIM_ONE_SQL, code) == 1) {
+          if (shard.remaining() < lowWatermark) {
+            requestRefresh();
+          }
+          return code;
+        }
+      }
+    }
+    // Shard missing or drained: the table is the source of truth, refill in the background. A
+    // shard that was built empty is left to the periodic refresh, so NO_STOCK stays cheap.
+    if (shard == null || !shard.builtEmpty()) {
+      requestRefresh();
+    }
+    return jdbc.query(
+        CLAIM_SQL,
+        rs -> rs.next() ? rs.getString(1) : null,
+        (Object) placement.candidates().toArray(new String[0]));
+  }
+
+  /**
+   * Claims up to {@code count} codes for the placement, best first, with one statement per run of
+   * shard slots instead of one per code. Fewer than {@code count} codes means the stock ran out.
+   */
+  public List<String> claim(SizeRules.Placement placement, int count) {
+    List<String> claimed = new ArrayList<>(count);
+    Shard shard = shards.get(placement.prefix());
+    if (shard != null) {
+      List<String> slots;
+      while (claimed.size() < count && !(slots = shard.next(count - claimed.size())).isEmpty()) {
+        Set<String> won =
+            new HashSet<>(
+                jdbc.queryForList(
+                    CLAIM_SLOTS_SQL, String.class, (Object) slots.toArray(new String[0])));
+        for (String code : slots) {
+          if (won.contains(code)) {
+            claimed.add(code);
+          }
+        }
+      }
+      if (claimed.size() == count) {
+        if (shard.remaining() < lowWatermark) {
+          requestRefresh();
+        }
+        return claimed;
+      }
+    }
+    if (shard == null || !shard.builtEmpty()) {
+      requestRefresh();
+    }
+    List<String> rest =
+        new ArrayList<>(
+            jdbc.queryForList(
+                CLAIM_MANY_SQL,
+                String.class,
+                placement.candidates().toArray(new String[0]),
+                count - claimed.size()));
+    rest.sort(Comparator.comparingInt(placement.candidates()::indexOf));
+    claimed.addAll(rest);
+    return claimed;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void reconcileAndWarmUp() {
+    reconcile();
+    refresh();
+  }
+
+  /**
+   * Brings the table in line with the size rules and book_barcodes (on a fresh database, after a
+   * rule change, a restore or a manual fix in the table): codes the rules add are inserted, codes
+   * attached to a book are taken, and codes attached to none that were claimed more than {@code
+   * barcode.pool.claim-grace-hours} ago are offered again. The grace period covers codes handed out
+   * for a registration that has not been saved yet. Every step is idempotent, so the table is
+   * seeded by the first run at startup and kept up by the later ones.
+   */
+  @Scheduled(
+      initialDelayString = "${barcode.pool.reconcile-ms:3600000}",
+      fixedDelayString = "${barcode.pool.reconcile-ms:3600000}")
+  public void reconcile() {
+    try {
+      SizeRules rules = sizeRules.current();
+      int added = rules == null ? 0 : addMissingCodes(rules);
+      if (rules == null) {
+        log.warn("Size rules are not loaded, barcodes table not seeded");
+      } else if (added > 0) {
+        log.info("Added {} barcode(s) of the current size rules to the table", added);
+        requestRefresh();
+      }
+      int taken =
+          jdbc.update(
+              """
+                  update public.barcodes b set is_available = false, updated_at = now()
+                  where b.is_available
+                    and exists (select 1 from book_barcodes bb where bb.barcode = b.code)
+                  """);
+      if (taken > 0) {
+        log.warn("Marked {} barcode(s) unavailable that are attached to books", taken);
+      }
+      int freed =
+          jdbc.update(
+              """
+                  update public.barcodes b set is_available = true, updated_at = now()
+                  where not b.is_available
+                    and b.updated_at < now() - make_interval(hours => ?)
+                    and not exists (select 1 from book_barcodes bb where bb.barcode = b.code)
+                  """,
+              claimGraceHours);
+      if (freed > 0) {
+        log.warn("Marked {} barcode(s) available that are attached to no book", freed);
+        requestRefresh();
+      }
+    } catch (RuntimeException e) {
+      log.warn("Barcode reconcile failed: {}", e.toString());
+    }
+  }
+
+  /**
+   * Inserts every code of the rules that the table does not have yet; codes attached to a book
+   * start out taken. Returns the number of codes added.
+   */
+  private int addMissingCodes(SizeRules rules) {
+    String[] codes =
+        rules.candidatesByPrefix().values().stream().flatMap(List::stream).toArray(String[]::new);
+    return jdbc.update(
+        """
+            insert into public.barcodes (code, is_available)
+            select c.code, not exists (select 1 from book_barcodes bb where bb.barcode = c.code)
+            from unnest(?::text[]) as c(code)
+            on conflict (code) do nothing
+            """,
+        (Object) codes);
+  }
+
+  @Scheduled(
+      initialDelayString = "${barcode.pool.refresh-ms:30000}",
+      fixedDelayString = "${barcode.pool.refresh-ms:30000}")
+  public void scheduledRefresh() {
+    requestRefresh();
+  }
+
+  private void requestRefresh() {
+    if (refreshing.compareAndSet(false, true)) {
+      try {
+        executor.execute(
+            () -> {
+              try {
+                refresh();
+              } finally {
+                refreshing.set(false);
+              }
+            });
+      } catch (RuntimeException e) {
+        refreshing.set(false);
+        log.warn("Could not schedule barcode pool refresh: {}", e.toString());
+      }
+    }
+  }
+
+  /** Rebuilds every shard from the table in one query and swaps them in. */
+  void refresh() {
+    SizeRules rules = sizeRules.current();
+    if (rules == null) {
+      return;
+    }
+    try {
+      Set<String> available =
+          new HashSet<>(
+              jdbc.queryForList(
+                  "select code from public.barcodes where is_available", String.class));
+      Map<String, Shard> next = new HashMap<>();
+      for (Map.Entry<String, List<String>> e : rules.candidatesByPrefix().entrySet()) {
+        String[] codes = e.getValue().stream().filter(available::contains).toArray(String[]::new);
+        next.put(e.getKey(), new Shard(codes));
+      }
+      shards = Map.copyOf(next);
+      publishStock(rules);
+    } catch (RuntimeException e) {
+      log.warn("Barcode pool refresh failed, keeping the current shards: {}", e.toString());
+    }
+  }
+
+  private void publishStock(SizeRules rules) {
+    Map<String, Shard> current = shards;
+    List<MultiGauge.Row<?>> rows = new ArrayList<>();
+    Set<String> seen = new HashSet<>();
+    for (SizeRules.Rule r : rules.rules()) {
+      String[][] edges = {
+        {r.lowPrefix(), "down"}, {r.highPrefix(), "up"}, {r.specialPrefix(), "left"}
+      };
+      for (String[] edge : edges) {
+        Shard shard = current.get(edge[0]);
+        if (shard != null && seen.add(edge[0])) {
+          Tags tags =
+              Tags.of(
+                  "size_group",
+                  String.valueOf(r.sizeGroup()),
+                  "prefix",
+                  edge[0],
+                  "position",
+                  edge[1]);
+          rows.add(MultiGauge.Row.of(tags, shard, Shard::remaining));
+        }
+      }
+    }
+    stock.register(rows, true);
+  }
+}
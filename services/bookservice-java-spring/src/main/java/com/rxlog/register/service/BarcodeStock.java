@@ -0,0 +1,85 @@
+package com.rxlog.register.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stock per size group and edge, read from the {@code barcode_stock_summary} view. Statement
+ * triggers on {@code barcodes} keep its slotted counters current in the same transaction as every
+ * claim or release (see V110), so a stock check sums at most 16 rows of one prefix and the full
+ * summary reads a few hundred.
+ */
+@Component
+public class BarcodeStock {
+
+  /** Stock of one prefix; {@code low} when fewer than the threshold codes are left. */
+  public record Level(
+      int sizeGroup,
+      String color,
+      String position,
+      String prefix,
+      int available,
+      int total,
+      boolean low) {}
+
+  private final JdbcTemplate jdbc;
+  private final SizeRuleEngine sizeRules;
+  private final int lowThreshold;
+
+  public BarcodeStock(
+      JdbcTemplate jdbc,
+      SizeRuleEngine sizeRules,
+      @Value("${barcode.stock.low-threshold:10}") int lowThreshold) {
+    this.jdbc = jdbc;
+    this.sizeRules = sizeRules;
+    this.lowThreshold = lowThreshold;
+  }
+
+  /** Codes of the prefix that are still available; 0 for unknown prefixes. */
+  public int available(String prefix) {
+    List<Integer> n =
+        jdbc.queryForList(
+            "select available from public.barcode_stock_summary where prefix = ?",
+            Integer.class,
+            prefix);
+    return n.isEmpty() ? 0 : n.get(0);
+  }
+
+  /**
+   * One entry per size group and edge of the loaded rules, in size group order. Null if the rules
+   * are not loaded.
+   */
+  public List<Level> levels() {
+    SizeRules rules = sizeRules.current();
+    if (rules == null) {
+      return null;
+    }
+    Map<String, int[]> counts = new HashMap<>();
+    jdbc.query(
+        "select prefix, available, total from public.barcode_stock_summary",
+        rs -> {
+          counts.put(rs.getString(1), new int[] {rs.getInt(2), rs.getInt(3)});
+        });
+
+    List<Level> out = new ArrayList<>();
+    for (SizeRules.Rule r : rules.rules()) {
+      String[][] edges = {
+        {r.lowPrefix(), "down"}, {r.highPrefix(), "up"}, {r.specialPrefix(), "left"}
+      };
+      for (String[] edge : edges) {
+        if (edge[0].isEmpty()) {
+          continue;
+        }
+        int[] c = counts.getOrDefault(edge[0], new int[2]);
+        out.add(
+            new Level(r.sizeGroup(), r.color(), edge[1], edge[0], c[0], c[1], c[0] < lowThreshold));
+      }
+    }
+    return out;
+  }
+}
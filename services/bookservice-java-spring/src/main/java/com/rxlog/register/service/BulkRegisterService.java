@@ -0,0 +1,201 @@
+package com.rxlog.register.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.rxlog.register.api.BulkRegisterResponse;
+import com.rxlog.register.api.BulkRegisterResponse.RowError;
+import com.rxlog.register.api.RegisterBookRequest;
+import com.rxlog.register.web.BookDao;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Streams NDJSON or CSV registrations into the database in chunks. Only one chunk is held in
+ * memory; each chunk is written by {@link BookDao#insertAll} in its own transaction. Invalid rows
+ * are reported and skipped instead of failing the whole upload. Rows the database rejects are
+ * reported as {@code DB_CONSTRAINT_VIOLATION} or {@code DB_ERROR}; the details only go to the log.
+ */
+@Service
+public class BulkRegisterService {
+
+  private static final Logger log = LoggerFactory.getLogger(BulkRegisterService.class);
+
+  private static final Set<String> READING_STATUSES =
+      Set.of("in_progress", "finished", "abandoned");
+
+  private final BookDao bookDao;
+  private final Validator validator;
+  private final ObjectReader jsonReader;
+  private final ObjectReader csvReader;
+  private final int chunkSize;
+
+  public BulkRegisterService(
+      BookDao bookDao,
+      Validator validator,
+      ObjectMapper objectMapper,
+      @Value("${register.bulk.chunk-size:500}") int chunkSize) {
+    this.bookDao = bookDao;
+    this.validator = validator;
+    this.chunkSize = chunkSize;
+    this.jsonReader = objectMapper.readerFor(RegisterBookRequest.class);
+    CsvMapper csv = new CsvMapper();
+    csv.enable(CsvParser.Feature.TRIM_SPACES);
+    csv.enable(CsvParser.Feature.EMPTY_STRING_AS_NULL);
+    csv.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    this.csvReader =
+        csv.readerFor(RegisterBookRequest.class).with(CsvSchema.emptySchema().withHeader());
+  }
+
+  /** One {@link RegisterBookRequest} JSON object per line; blank lines are skipped. */
+  public BulkRegisterResponse registerNdjson(InputStream in) throws IOException {
+    Batch batch = new Batch();
+    try (BufferedReader lines =
+        new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      int row = 0;
+      String line;
+      while ((line = lines.readLine()) != null) {
+        if (line.isBlank()) continue;
+        row++;
+        try {
+          batch.add(row, jsonReader.readValue(line));
+        } catch (JsonProcessingException e) {
+          batch.reject(row, "unreadable: " + e.getOriginalMessage());
+        }
+      }
+    }
+    return batch.finish();
+  }
+
+  /** CSV with a header row naming the {@link RegisterBookRequest} fields. */
+  public BulkRegisterResponse registerCsv(InputStream in) throws IOException {
+    Batch batch = new Batch();
+    try (MappingIterator<RegisterBookRequest> it = csvReader.readValues(in)) {
+      int row = 0;
+      // Set while the iterator skips the rest of a record that could not be read; parse errors it
+      // runs into on the way belong to that record, which is already reported.
+      boolean skipping = false;
+      long failedAt = -1;
+      while (true) {
+        try {
+          if (!it.hasNextValue()) break;
+        } catch (JsonProcessingException e) {
+          if (!skipping) {
+            batch.reject(++row, "unreadable: " + e.getOriginalMessage());
+            skipping = true;
+          }
+          long at = e.getLocation() == null ? -1 : e.getLocation().getCharOffset();
+          if (at == failedAt) {
+            break; // the parser makes no progress, nothing after this point can be read
+          }
+          failedAt = at;
+          continue;
+        }
+        row++;
+        try {
+          batch.add(row, it.nextValue());
+          skipping = false;
+        } catch (JsonProcessingException e) {
+          // the iterator resyncs to the next record on the following hasNextValue()
+          batch.reject(row, "unreadable: " + e.getOriginalMessage());
+          skipping = true;
+        }
+      }
+    }
+    return batch.finish();
+  }
+
+  private List<String> validate(RegisterBookRequest req) {
+    List<String> problems = new ArrayList<>();
+    for (ConstraintViolation<RegisterBookRequest> v : validator.validate(req)) {
+      problems.add(v.getPropertyPath() + ": " + v.getMessage());
+    }
+    if (req.readingStatus() != null && !READING_STATUSES.contains(req.readingStatus())) {
+      problems.add("readingStatus: must be one of " + READING_STATUSES);
+    }
+    return problems;
+  }
+
+  private final class Batch {
+    private final List<RegisterBookRequest> pending = new ArrayList<>(chunkSize);
+    private final List<Integer> pendingRows = new ArrayList<>(chunkSize);
+    private final List<RowError> errors = new ArrayList<>();
+    private int received;
+    private int registered;
+
+    void add(int row, RegisterBookRequest req) {
+      received++;
+      List<String> problems = validate(req);
+      if (!problems.isEmpty()) {
+        errors.add(new RowError(row, problems));
+        return;
+      }
+      pending.add(req);
+      pendingRows.add(row);
+      if (pending.size() == chunkSize) {
+        flush();
+      }
+    }
+
+    void reject(int row, String problem) {
+      received++;
+      errors.add(new RowError(row, List.of(problem)));
+    }
+
+    void flush() {
+      if (pending.isEmpty()) return;
+      try {
+        bookDao.insertAll(pending);
+        registered += pending.size();
+      } catch (DataAccessException e) {
+        // The chunk was rolled back; retry row by row to isolate the rows the database rejects.
+        for (int i = 0; i < pending.size(); i++) {
+          try {
+            bookDao.insert(pending.get(i));
+            registered++;
+          } catch (DataAccessException rowError) {
+            log.warn(
+                "Bulk row {} rejected by the database: {}",
+                pendingRows.get(i),
+                rowError.getMostSpecificCause().getMessage());
+            errors.add(
+                new RowError(
+                    pendingRows.get(i),
+                    List.of(
+                        rowError instanceof DataIntegrityViolationException
+                            ? "DB_CONSTRAINT_VIOLATION"
+                            : "DB_ERROR")));
+          }
+        }
+      }
+      pending.clear();
+      pendingRows.clear();
+    }
+
+    BulkRegisterResponse finish() {
+      flush();
+      errors.sort(Comparator.comparingInt(RowError::row));
+      return new BulkRegisterResponse(received, registered, errors);
+    }
+  }
+}
@@ -6,6 +6,8 @@ import com.rxlog.register.api.CreateDraftResponse;
 import com.rxlog.register.api.RegisterBookRequest;
 import com.rxlog.register.api.RegisterBookResponse;
 import com.rxlog.register.web.BookDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -13,6 +15,8 @@ import org.springframework.transaction.annotation.Transactional;
 @Service
 public class RegisterBookService {
 
+  private static final Logger log = LoggerFactory.getLogger(RegisterBookService.class);
+
   private final BookDao bookDao;
 
   public RegisterBookService(BookDao bookDao) {
@@ -35,7 +39,7 @@ public class RegisterBookService {
   public RegisterBookResponse registerBook(RegisterBookRequest req) {
     String bookId = bookDao.insert(req);
 
-    System.out.println(">>> registerBook: id=" + bookId + ", barcode=" + req.barcode());
+    log.debug("registerBook: id={}, barcode={}", bookId, req.barcode());
 
     return new RegisterBookResponse(bookId, req.barcode(), req.readingStatus());
   }
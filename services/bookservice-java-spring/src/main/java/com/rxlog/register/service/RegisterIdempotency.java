@@ -0,0 +1,181 @@
+package com.rxlog.register.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rxlog.register.api.RegisterBookRequest;
+import com.rxlog.register.api.RegisterBookResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Idempotency-Key handling for single registrations, so client retries never register a book twice.
+ *
+ * <p>Three tiers, cheapest first: a bounded cache of finished keys; a map of keys currently being
+ * executed in this instance, which concurrent duplicates wait on instead of opening their own
+ * transaction; and {@code register_idempotency_keys}. The key row is inserted in the same
+ * transaction as the book, so a duplicate on another instance blocks on that insert and then reads
+ * the committed response (or takes over the key if the first attempt rolled back).
+ *
+ * <p>A key is bound to the request it was first used with; reusing it for a different body is
+ * rejected. Outcomes are counted as {@code register.idempotency{outcome}}.
+ */
+@Component
+public class RegisterIdempotency {
+
+  private static final Logger log = LoggerFactory.getLogger(RegisterIdempotency.class);
+
+  /** The key was first used with a different request body. */
+  public static class KeyReusedException extends RuntimeException {
+    KeyReusedException(String key) {
+      super("Idempotency-Key " + key + " was used for a different request");
+    }
+  }
+
+  private record Stored(String fingerprint, RegisterBookResponse response) {}
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final MeterRegistry meters;
+  private final Duration retention;
+  private final Cache<String, Stored> completed;
+  private final ConcurrentHashMap<String, CompletableFuture<Stored>> inFlight =
+      new ConcurrentHashMap<>();
+
+  public RegisterIdempotency(
+      JdbcTemplate jdbc,
+      PlatformTransactionManager transactionManager,
+      MeterRegistry meters,
+      @Value("${register.idempotency.max-size:10000}") long maxSize,
+      @Value("${register.idempotency.retention-hours:24}") long retentionHours) {
+    this.jdbc = jdbc;
+    this.tx = new TransactionTemplate(transactionManager);
+    this.meters = meters;
+    this.retention = Duration.ofHours(retentionHours);
+    this.completed = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(retention).build();
+  }
+
+  /**
+   * Runs {@code register} once per key and returns its response to every request with that key.
+   * {@code register} joins the transaction that records the key.
+   */
+  public RegisterBookResponse execute(
+      String key, RegisterBookRequest req, Supplier<RegisterBookResponse> register) {
+    String fingerprint = fingerprint(req);
+    Stored done = completed.getIfPresent(key);
+    if (done != null) {
+      return replay(key, fingerprint, done, "replayed");
+    }
+
+    CompletableFuture<Stored> mine = new CompletableFuture<>();
+    CompletableFuture<Stored> running = inFlight.putIfAbsent(key, mine);
+    if (running != null) {
+      try {
+        return replay(key, fingerprint, running.join(), "coalesced");
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException r ? r : e;
+      }
+    }
+    try {
+      Stored stored = tx.execute(s -> claimAndRun(key, fingerprint, register));
+      completed.put(key, stored);
+      mine.complete(stored);
+      return replay(key, fingerprint, stored, null);
+    } catch (RuntimeException e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, mine);
+    }
+  }
+
+  private Stored claimAndRun(String key, String fingerprint, Supplier<RegisterBookResponse> run) {
+    int claimed =
+        jdbc.update(
+            """
+                insert into public.register_idempotency_keys (idempotency_key, fingerprint)
+                values (?, ?)
+                on conflict (idempotency_key) do nothing
+                """,
+            key,
+            fingerprint);
+    if (claimed == 0) {
+      // committed by an earlier request, here or on another instance
+      meters.counter("register.idempotency", "outcome", "replayed_from_db").increment();
+      return jdbc.queryForObject(
+          """
+              select fingerprint, book_id, barcode, reading_status
+              from public.register_idempotency_keys
+              where idempotency_key = ?
+              """,
+          (rs, i) ->
+              new Stored(
+                  rs.getString("fingerprint"),
+                  new RegisterBookResponse(
+                      rs.getString("book_id"),
+                      rs.getString("barcode"),
+                      rs.getString("reading_status"))),
+          key);
+    }
+    RegisterBookResponse res = run.get();
+    jdbc.update(
+        """
+            update public.register_idempotency_keys
+            set book_id = ?::uuid, barcode = ?, reading_status = ?
+            where idempotency_key = ?
+            """,
+        res.bookId(),
+        res.barcode(),
+        res.readingStatus(),
+        key);
+    meters.counter("register.idempotency", "outcome", "executed").increment();
+    return new Stored(fingerprint, res);
+  }
+
+  private RegisterBookResponse replay(
+      String key, String fingerprint, Stored stored, String outcome) {
+    if (!stored.fingerprint().equals(fingerprint)) {
+      meters.counter("register.idempotency", "outcome", "rejected").increment();
+      throw new KeyReusedException(key);
+    }
+    if (outcome != null) {
+      meters.counter("register.idempotency", "outcome", outcome).increment();
+    }
+    return stored.response();
+  }
+
+  @Scheduled(fixedDelayString = "${register.idempotency.cleanup-ms:3600000}")
+  public void deleteExpired() {
+    int deleted =
+        jdbc.update(
+            "delete from public.register_idempotency_keys where created_at < now() - ?::interval",
+            retention.toHours() + " hours");
+    if (deleted > 0) {
+      log.debug("Deleted {} expired idempotency keys", deleted);
+    }
+  }
+
+  private static String fingerprint(RegisterBookRequest req) {
+    try {
+      MessageDigest sha = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(sha.digest(req.toString().getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.rxlog.register.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the current {@link SizeRules} snapshot and swaps it when config/sizerules.csv or
+ * config/barcode-ranking.txt change on disk. Readers never block: they get whichever immutable
+ * snapshot is current. A file that fails to parse is logged and the previous snapshot kept.
+ *
+ * <p>Reloads are serialized with a lock rather than {@code synchronized}, so the file I/O does not
+ * pin a carrier thread in virtual-thread mode.
+ */
+@Component
+public class SizeRuleEngine {
+
+  private static final Logger log = LoggerFactory.getLogger(SizeRuleEngine.class);
+
+  private final Path sizeRulesFile;
+  private final Path rankingFile;
+  private final ReentrantLock reloadLock = new ReentrantLock();
+
+  private volatile SizeRules current;
+  private FileTime sizeRulesModified;
+  private FileTime rankingModified;
+  private boolean missingLogged;
+
+  public SizeRuleEngine(
+      @Value("${barcode.sizerules-file:config/sizerules.csv}") String sizeRulesFile,
+      @Value("${barcode.ranking-file:config/barcode-ranking.txt}") String rankingFile) {
+    this.sizeRulesFile = Path.of(sizeRulesFile);
+    this.rankingFile = Path.of(rankingFile);
+    reloadIfChanged();
+  }
+
+  /** The loaded rules, or null if the files could not be read yet. */
+  public SizeRules current() {
+    return current;
+  }
+
+  /** Shortcut for {@code current().resolve(...)}; null if no rule applies or none are loaded. */
+  public SizeRules.Placement resolve(BigDecimal widthCm, BigDecimal heightCm) {
+    SizeRules rules = current;
+    return rules == null ? null : rules.resolve(widthCm, heightCm);
+  }
+
+  @Scheduled(fixedDelayString = "${barcode.rules-reload-ms:5000}")
+  public void reloadIfChanged() {
+    reloadLock.lock();
+    try {
+      reload();
+    } finally {
+      reloadLock.unlock();
+    }
+  }
+
+  private void reload() {
+    FileTime rulesTime;
+    FileTime rankTime;
+    try {
+      rulesTime = Files.getLastModifiedTime(sizeRulesFile);
+      rankTime = Files.getLastModifiedTime(rankingFile);
+    } catch (IOException e) {
+      if (!missingLogged) {
+        log.error("Cannot read size rules, barcode assignment is degraded: {}", e.toString());
+        missingLogged = true;
+      }
+      return;
+    }
+    missingLogged = false;
+    if (rulesTime.equals(sizeRulesModified) && rankTime.equals(rankingModified)) {
+      return;
+    }
+    try (Reader rules = Files.newBufferedReader(sizeRulesFile, StandardCharsets.UTF_8);
+        Reader ranking = Files.newBufferedReader(rankingFile, StandardCharsets.UTF_8)) {
+      current = SizeRules.parse(rules, ranking);
+      log.info(
+          "Loaded {} size rules and {} ranking entries from {} / {}",
+          current.rules().size(),
+          current.ranking().size(),
+          sizeRulesFile,
+          rankingFile);
+    } catch (IOException | RuntimeException e) {
+      log.error("Reloading size rules failed, keeping the previous ones: {}", e.toString());
+    }
+    // remember the timestamps either way so a broken file is not re-parsed every few seconds
+    sizeRulesModified = rulesTime;
+    rankingModified = rankTime;
+  }
+}
@@ -0,0 +1,189 @@
+package com.rxlog.register.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable snapshot of config/sizerules.csv and config/barcode-ranking.txt, with the same
+ * semantics as the Go barcode engine: the width picks the size group, the height picks the edge
+ * (special height → left, below threshold → down, otherwise up) and with it the prefix.
+ *
+ * <p>Rules are indexed by their lower width bound, so a lookup is one floor search. The candidate
+ * codes of every prefix (prefix + ranking suffix, in ranking order) are built once per load.
+ */
+public final class SizeRules {
+
+  public record Rule(
+      int sizeGroup,
+      BigDecimal widthMinCm,
+      BigDecimal widthMaxCm,
+      String color,
+      BigDecimal thresholdCm,
+      String lowPrefix,
+      String highPrefix,
+      String specialPrefix,
+      Set<BigDecimal> specialHeightsCm) {}
+
+  /** Where a book of the given size goes and which codes may be claimed for it, best first. */
+  public record Placement(Rule rule, String prefix, String position, List<String> candidates) {}
+
+  private final NavigableMap<BigDecimal, Rule> byWidthMin;
+  private final List<String> ranking;
+  private final Map<String, List<String>> candidatesByPrefix;
+
+  private SizeRules(List<Rule> rules, List<String> ranking) {
+    TreeMap<BigDecimal, Rule> index = new TreeMap<>();
+    Map<String, List<String>> candidates = new HashMap<>();
+    for (Rule r : rules) {
+      index.put(r.widthMinCm(), r);
+      for (String prefix : List.of(r.lowPrefix(), r.highPrefix(), r.specialPrefix())) {
+        if (!prefix.isEmpty()) {
+          candidates.computeIfAbsent(prefix, p -> codes(p, ranking));
+        }
+      }
+    }
+    this.byWidthMin = Collections.unmodifiableNavigableMap(index);
+    this.ranking = List.copyOf(ranking);
+    this.candidatesByPrefix = Map.copyOf(candidates);
+  }
+
+  private static List<String> codes(String prefix, List<String> ranking) {
+    List<String> out = new ArrayList<>(ranking.size());
+    for (String suffix : ranking) {
+      out.add(prefix + suffix);
+    }
+    return List.copyOf(out);
+  }
+
+  public static SizeRules parse(Reader sizeRulesCsv, Reader rankingTxt) throws IOException {
+    List<Rule> rules = parseRules(sizeRulesCsv);
+    List<String> ranking = parseRanking(rankingTxt);
+    if (rules.isEmpty()) throw new IOException("size rules csv has no data");
+    if (ranking.isEmpty()) throw new IOException("ranking file seems empty or invalid");
+    return new SizeRules(rules, ranking);
+  }
+
+  private static List<Rule> parseRules(Reader in) throws IOException {
+    List<Rule> rules = new ArrayList<>();
+    CsvMapper csv = new CsvMapper();
+    csv.enable(CsvParser.Feature.WRAP_AS_ARRAY);
+    try (MappingIterator<String[]> rows = csv.readerFor(String[].class).readValues(in)) {
+      int line = 0;
+      while (rows.hasNextValue()) {
+        String[] row = rows.nextValue();
+        line++;
+        if (line == 1) continue; // header
+        if (row.length < 9) {
+          throw new IOException("row " + line + ": expected 9 columns, got " + row.length);
+        }
+        rules.add(
+            new Rule(
+                Integer.parseInt(row[0].trim()),
+                decimal(row[1]),
+                decimal(row[2]),
+                firstToken(row[3]),
+                decimal(row[4]),
+                firstToken(row[5]),
+                firstToken(row[6]),
+                firstToken(row[7]),
+                heights(row[8])));
+      }
+    } catch (NumberFormatException e) {
+      throw new IOException("size rules csv: " + e.getMessage(), e);
+    }
+    return rules;
+  }
+
+  private static List<String> parseRanking(Reader in) throws IOException {
+    List<String> out = new ArrayList<>();
+    BufferedReader lines = new BufferedReader(in);
+    String line;
+    while ((line = lines.readLine()) != null) {
+      String s = line.trim();
+      if (s.length() == 3 && s.chars().allMatch(Character::isDigit)) {
+        out.add(s);
+      }
+    }
+    return out;
+  }
+
+  /** "i, ik" → "i": multi-valued cells use their first entry, like the Go engine. */
+  private static String firstToken(String s) {
+    int idx = s.indexOf(',');
+    return (idx >= 0 ? s.substring(0, idx) : s).trim();
+  }
+
+  private static BigDecimal decimal(String s) {
+    return new BigDecimal(s.trim().replace(',', '.'));
+  }
+
+  private static Set<BigDecimal> heights(String s) {
+    Set<BigDecimal> out = new HashSet<>();
+    for (String p : s.split(";")) {
+      if (!p.isBlank()) {
+        out.add(decimal(p).setScale(1, RoundingMode.HALF_UP));
+      }
+    }
+    return Set.copyOf(out);
+  }
+
+  /** Returns null if no size group covers the width. */
+  public Rule ruleFor(BigDecimal widthCm) {
+    var e = byWidthMin.floorEntry(widthCm);
+    if (e == null || widthCm.compareTo(e.getValue().widthMaxCm()) > 0) {
+      return null;
+    }
+    return e.getValue();
+  }
+
+  /** Returns null if no size group covers the width. */
+  public Placement resolve(BigDecimal widthCm, BigDecimal heightCm) {
+    Rule rule = ruleFor(widthCm);
+    if (rule == null) {
+      return null;
+    }
+    String prefix;
+    String position;
+    if (!rule.specialPrefix().isEmpty()
+        && rule.specialHeightsCm().contains(heightCm.setScale(1, RoundingMode.HALF_UP))) {
+      prefix = rule.specialPrefix();
+      position = "left";
+    } else if (heightCm.compareTo(rule.thresholdCm()) < 0) {
+      prefix = rule.lowPrefix();
+      position = "down";
+    } else {
+      prefix = rule.highPrefix();
+      position = "up";
+    }
+    return new Placement(
+        rule, prefix, position, candidatesByPrefix.getOrDefault(prefix, List.of()));
+  }
+
+  public List<Rule> rules() {
+    return List.copyOf(byWidthMin.values());
+  }
+
+  public List<String> ranking() {
+    return ranking;
+  }
+
+  /** Every prefix of every rule with its candidate codes in ranking order. */
+  public Map<String, List<String>> candidatesByPrefix() {
+    return candidatesByPrefix;
+  }
+}
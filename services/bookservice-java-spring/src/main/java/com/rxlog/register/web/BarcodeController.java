@@ -1,6 +1,15 @@
 package com.rxlog.register.web;
 
+import com.rxlog.register.service.BarcodePool;
+import com.rxlog.register.service.BarcodeStock;
+import com.rxlog.register.service.SizeRuleEngine;
+import com.rxlog.register.service.SizeRules;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -12,33 +21,46 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class BarcodeController {
   private final JdbcTemplate jdbc;
+  private final SizeRuleEngine sizeRules;
+  private final BarcodePool barcodePool;
+  private final BarcodeStock barcodeStock;
+  private final MeterRegistry meters;
+
+  /** Largest stack accepted by {@link #assignBatch}. */
+  static final int MAX_BATCH = 200;
 
   private static BigDecimal cm(Object v, String f) {
     if (v == null) throw new IllegalArgumentException(f + " is required");
     return new BigDecimal(v.toString().trim().replace(',', '.'));
   }
 
-  private String q1(String sql, Object... a) {
-    return jdbc.query(sql, rs -> rs.next() ? rs.getString(1) : null, a);
-  }
-
+  /** Timed as {@code barcode.assign{outcome}}; outcome is the error type or OK. */
   @PostMapping("/assignForDimensions")
   public ResponseEntity<?> assign(@RequestBody Map<String, Object> body) {
+    Timer.Sample sample = Timer.start(meters);
+    ResponseEntity<?> res = assignFor(body);
+    Object type = res.getBody() instanceof Map<?, ?> m ? m.get("type") : null;
+    sample.stop(meters.timer("barcode.assign", "outcome", type != null ? type.toString() : "OK"));
+    return res;
+  }
+
+  private ResponseEntity<?> assignFor(Map<String, Object> body) {
     try {
       var w = cm(body.get("widthCm"), "widthCm");
       var h = cm(body.get("heightCm"), "heightCm");
-      String rE = q1("select match_color_code_with_stock_cm(?, ?, 'e')", w, h);
-      String rL = q1("select match_color_code_with_stock_cm(?, ?, 'l')", w, h);
-      String rO = q1("select match_color_code_with_stock_cm(?, ?, 'o')", w, h);
-      if (rE == null && rL == null && rO == null)
+      if (sizeRules.current() == null)
+        return ResponseEntity.status(503).body(Map.of("type", "RULES_UNAVAILABLE"));
+      SizeRules.Placement p = sizeRules.resolve(w, h);
+      if (p == null)
         return ResponseEntity.unprocessableEntity()
             .body(Map.of("type", "NO_RULE_APPLIES", "widthCm", w, "heightCm", h));
-      String code = q1("select assign_barcode_for_dimensions_auto_cm(?,?)", w, h);
+      String code = barcodePool.claim(p);
       if (code == null) {
-        String rule = rE != null ? rE : (rL != null ? rL : rO);
-        return ResponseEntity.status(409).body(Map.of("type", "NO_STOCK", "rule", rule));
+        return ResponseEntity.status(409)
+            .body(Map.of("type", "NO_STOCK", "rule", p.rule().color(), "prefix", p.prefix()));
       }
-      return ResponseEntity.ok(Map.of("barcode", code));
+      return ResponseEntity.ok(
+          Map.of("barcode", code, "color", p.rule().color(), "position", p.position()));
     } catch (org.springframework.dao.DataAccessResourceFailureException e) {
       return ResponseEntity.status(503).body(Map.of("type", "DB_UNAVAILABLE"));
     } catch (IllegalArgumentException e) {
@@ -49,16 +71,98 @@ public class BarcodeController {
     }
   }
 
+  /**
+   * Assigns barcodes for a stack of books measured in one go: a list of {@code {widthCm, heightCm}}
+   * in, one result per item out, in the same order and shaped like the answers of {@link #assign}
+   * (an error item carries its {@code type}). Items of the same prefix are claimed together, so a
+   * stack costs one or two statements per size group instead of one round trip per book.
+   */
+  @PostMapping("/assignBatch")
+  public ResponseEntity<?> assignBatch(@RequestBody List<Map<String, Object>> items) {
+    if (items.size() > MAX_BATCH) {
+      return ResponseEntity.badRequest()
+          .body(Map.of("type", "BAD_REQUEST", "message", "at most " + MAX_BATCH + " items"));
+    }
+    if (sizeRules.current() == null)
+      return ResponseEntity.status(503).body(Map.of("type", "RULES_UNAVAILABLE"));
+    Timer.Sample sample = Timer.start(meters);
+    try {
+      List<Map<String, Object>> results = new ArrayList<>(items.size());
+      Map<String, List<Integer>> byPrefix = new LinkedHashMap<>();
+      List<SizeRules.Placement> placements = new ArrayList<>(items.size());
+      for (Map<String, Object> item : items) {
+        SizeRules.Placement p = null;
+        try {
+          if (item == null) throw new IllegalArgumentException("item must be an object");
+          var w = cm(item.get("widthCm"), "widthCm");
+          var h = cm(item.get("heightCm"), "heightCm");
+          p = sizeRules.resolve(w, h);
+          if (p == null) {
+            results.add(Map.of("type", "NO_RULE_APPLIES", "widthCm", w, "heightCm", h));
+          } else {
+            results.add(null);
+            byPrefix.computeIfAbsent(p.prefix(), k -> new ArrayList<>()).add(results.size() - 1);
+          }
+        } catch (IllegalArgumentException e) {
+          results.add(Map.of("type", "BAD_REQUEST", "message", e.getMessage()));
+        }
+        placements.add(p);
+      }
+
+      for (List<Integer> group : byPrefix.values()) {
+        List<String> codes = barcodePool.claim(placements.get(group.get(0)), group.size());
+        for (int i = 0; i < group.size(); i++) {
+          SizeRules.Placement p = placements.get(group.get(i));
+          results.set(
+              group.get(i),
+              i < codes.size()
+                  ? Map.of(
+                      "barcode", codes.get(i), "color", p.rule().color(), "position", p.position())
+                  : Map.of("type", "NO_STOCK", "rule", p.rule().color(), "prefix", p.prefix()));
+        }
+      }
+      for (Map<String, Object> r : results) {
+        Object type = r.get("type");
+        meters
+            .counter("barcode.assign.batch.items", "outcome", type != null ? type.toString() : "OK")
+            .increment();
+      }
+      return ResponseEntity.ok(results);
+    } catch (org.springframework.dao.DataAccessResourceFailureException e) {
+      return ResponseEntity.status(503).body(Map.of("type", "DB_UNAVAILABLE"));
+    } finally {
+      sample.stop(meters.timer("barcode.assign.batch"));
+    }
+  }
+
   @PostMapping("/release")
   public ResponseEntity<?> release(@RequestBody Map<String, Object> body) {
     String code = body.get("code") == null ? null : String.valueOf(body.get("code")).trim();
     if (code == null || code.isBlank())
       return ResponseEntity.badRequest()
           .body(Map.of("type", "BAD_REQUEST", "message", "code is required"));
+    // a code that is attached to a book stays taken until the book gives it up
     int upd =
         jdbc.update(
-            "update public.barcodes set is_available=true where code=? and is_available=false",
+            """
+                update public.barcodes b set is_available = true, updated_at = now()
+                where b.code = ? and not b.is_available
+                  and not exists (select 1 from book_barcodes bb where bb.barcode = b.code)
+                """,
             code);
     return ResponseEntity.ok(Map.of("released", upd > 0));
   }
+
+  /**
+   * Stock per size group and edge. {@code lowOnly=true} lists just the entries below {@code
+   * barcode.stock.low-threshold}, for alerting.
+   */
+  @GetMapping("/stock")
+  public ResponseEntity<?> stock(
+      @RequestParam(value = "lowOnly", required = false, defaultValue = "false") boolean lowOnly) {
+    List<BarcodeStock.Level> levels = barcodeStock.levels();
+    if (levels == null) return ResponseEntity.status(503).body(Map.of("type", "RULES_UNAVAILABLE"));
+    if (lowOnly) levels = levels.stream().filter(BarcodeStock.Level::low).toList();
+    return ResponseEntity.ok(levels);
+  }
 }
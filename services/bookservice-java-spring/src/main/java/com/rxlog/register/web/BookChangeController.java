@@ -0,0 +1,92 @@
+package com.rxlog.register.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Change feed for downstream consumers (analytics, mobile), so they can follow inserts, updates and
+ * barcode releases instead of rescanning books.
+ *
+ * <p>{@code GET /api/register/changes?after=<offset>} answers with the changes after that offset as
+ * NDJSON, oldest first. With {@code waitSeconds} an empty answer is held back until a change
+ * arrives or the time is up (long poll). The offset to resume after is the {@code offset} of the
+ * last line, also sent as {@code X-Change-Offset}. A change shows up once it has settled (V112),
+ * usually right after its commit. Offsets older than the retention answer 410: the consumer has to
+ * rescan and start over after the settled version of the catalog ETag ({@link CatalogVersion}).
+ */
+@RestController
+@RequestMapping("/api/register")
+public class BookChangeController {
+
+  static final String OFFSET_HEADER = "X-Change-Offset";
+
+  private final BookChangeFeed feed;
+  private final ObjectWriter writer;
+  private final int maxWaitSeconds;
+
+  public BookChangeController(
+      BookChangeFeed feed,
+      ObjectMapper objectMapper,
+      @Value("${book.changes.max-wait-seconds:30}") int maxWaitSeconds) {
+    this.feed = feed;
+    this.writer = objectMapper.writer();
+    this.maxWaitSeconds = maxWaitSeconds;
+  }
+
+  @GetMapping("/changes")
+  public CompletableFuture<ResponseEntity<?>> changes(
+      @RequestParam(value = "after", required = false, defaultValue = "0") long after,
+      @RequestParam(value = "limit", required = false, defaultValue = "100") int limit,
+      @RequestParam(value = "waitSeconds", required = false, defaultValue = "0") int waitSeconds) {
+
+    if (limit <= 0) {
+      limit = 100;
+    } else if (limit > 1000) {
+      limit = 1000;
+    }
+    waitSeconds = Math.max(0, Math.min(waitSeconds, maxWaitSeconds));
+
+    long pruned = feed.prunedThrough();
+    if (after < pruned) {
+      return CompletableFuture.completedFuture(
+          ResponseEntity.status(HttpStatus.GONE)
+              .body(Map.of("error", "offset_expired", "oldestAfter", pruned)));
+    }
+
+    List<BookChangeEvent> events = feed.read(after, limit);
+    if (!events.isEmpty() || waitSeconds == 0) {
+      return CompletableFuture.completedFuture(ndjson(after, events));
+    }
+    return feed.await(after, limit, Duration.ofSeconds(waitSeconds))
+        .thenApply(waited -> ndjson(after, waited));
+  }
+
+  private ResponseEntity<?> ndjson(long after, List<BookChangeEvent> events) {
+    StringBuilder body = new StringBuilder();
+    try {
+      for (BookChangeEvent e : events) {
+        body.append(writer.writeValueAsString(e)).append('\n');
+      }
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Change event not serializable", e);
+    }
+    long last = events.isEmpty() ? after : events.get(events.size() - 1).offset();
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .header(OFFSET_HEADER, Long.toString(last))
+        .body(body.toString());
+  }
+}
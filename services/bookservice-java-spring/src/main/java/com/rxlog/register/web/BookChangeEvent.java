@@ -0,0 +1,22 @@
+package com.rxlog.register.web;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * One entry of the change feed. {@code offset} is the position to resume after; {@code book} is the
+ * book as it is now (not as of the change), or null once it no longer exists. {@code barcodes} is
+ * only set for {@value #BARCODES_RELEASED} and lists the codes that were freed.
+ */
+public record BookChangeEvent(
+    long offset,
+    String kind,
+    String bookId,
+    List<String> barcodes,
+    OffsetDateTime at,
+    BookSearchResult book) {
+
+  public static final String BOOK_INSERTED = "book_inserted";
+  public static final String BOOK_UPDATED = "book_updated";
+  public static final String BARCODES_RELEASED = "barcodes_released";
+}
@@ -0,0 +1,191 @@
+package com.rxlog.register.web;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.Array;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Reads book_change_log (V113) for {@code GET /api/register/changes} and parks long-poll requests
+ * until something was logged after their offset.
+ *
+ * <p>A parked request holds no thread, only a future. {@link #wake} completes them right after a
+ * write of this instance commits (on the task executor, not on the committing thread), and every
+ * {@code book.changes.poll-ms} for writes of other instances; it reads the head of the log once and
+ * runs one query per distinct position waited on, so consumers that are caught up share a single
+ * read.
+ */
+@Component
+public class BookChangeFeed {
+
+  private static final Logger log = LoggerFactory.getLogger(BookChangeFeed.class);
+
+  private record Position(long after, int limit) {}
+
+  private record Waiter(Position at, CompletableFuture<List<BookChangeEvent>> result) {}
+
+  private final JdbcTemplate jdbc;
+  private final TaskExecutor executor;
+  private final int retentionHours;
+  private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock delivering = new ReentrantLock();
+  private final AtomicBoolean pending = new AtomicBoolean();
+
+  public BookChangeFeed(
+      JdbcTemplate jdbc,
+      @Qualifier("applicationTaskExecutor") TaskExecutor executor,
+      MeterRegistry meterRegistry,
+      @Value("${book.changes.retention-hours:168}") int retentionHours) {
+    this.jdbc = jdbc;
+    this.executor = executor;
+    this.retentionHours = retentionHours;
+    Gauge.builder("book.changes.waiting", waiters, Queue::size)
+        .description("Change feed requests parked until the next change")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Changes after {@code after}, oldest first, up to the settled version (V112): a change above it
+   * may still be joined by one below it from a transaction that has not committed yet.
+   */
+  public List<BookChangeEvent> read(long after, int limit) {
+    return jdbc.query(
+        "select c.version, c.kind, c.book_id::text as book_id, c.barcodes as released,"
+            + " c.created_at, "
+            + BookDao.SEARCH_COLUMNS
+            + " from book_change_log c left join books b on b.id = c.book_id"
+            + " where c.version > ? and c.version <= public.catalog_settled()"
+            + " order by c.version limit ?",
+        (rs, i) -> {
+          Array released = rs.getArray("released");
+          return new BookChangeEvent(
+              rs.getLong("version"),
+              rs.getString("kind"),
+              rs.getString("book_id"),
+              released != null ? BookDao.barcodes(released) : null,
+              rs.getObject("created_at", OffsetDateTime.class),
+              rs.getString("id") != null ? BookDao.mapRow(rs) : null);
+        },
+        after,
+        limit);
+  }
+
+  /** Offsets up to this one have been pruned and can no longer be resumed from. */
+  public long prunedThrough() {
+    return jdbc.queryForObject("select version from book_change_log_pruned", Long.class);
+  }
+
+  /**
+   * Completes with the first changes after {@code after}, or with an empty list once {@code wait}
+   * has passed without any.
+   */
+  public CompletableFuture<List<BookChangeEvent>> await(long after, int limit, Duration wait) {
+    CompletableFuture<List<BookChangeEvent>> result = new CompletableFuture<>();
+    Waiter waiter = new Waiter(new Position(after, limit), result);
+    waiters.add(waiter);
+    result.whenComplete((events, e) -> waiters.remove(waiter));
+    result.completeOnTimeout(List.of(), wait.toMillis(), TimeUnit.MILLISECONDS);
+    wake(); // a change may have committed since the caller's last read
+    return result;
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onInserted(BooksInsertedEvent event) {
+    requestWake();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUpdated(BookUpdatedEvent event) {
+    requestWake();
+  }
+
+  /** Runs {@link #wake} on the task executor, so the writer's request does not wait for it. */
+  private void requestWake() {
+    if (waiters.isEmpty()) {
+      return;
+    }
+    try {
+      executor.execute(this::wake);
+    } catch (RuntimeException e) {
+      // the next poll delivers instead
+      log.warn("Could not schedule change feed delivery: {}", e.toString());
+    }
+  }
+
+  /**
+   * Hands new changes to parked requests. Concurrent calls do not queue up: whoever holds the lock
+   * runs once more for every wake-up that arrived meanwhile.
+   */
+  @Scheduled(fixedDelayString = "${book.changes.poll-ms:500}")
+  public void wake() {
+    pending.set(true);
+    while (pending.get() && !waiters.isEmpty() && delivering.tryLock()) {
+      try {
+        pending.set(false);
+        deliver();
+      } finally {
+        delivering.unlock();
+      }
+    }
+  }
+
+  private void deliver() {
+    long head =
+        jdbc.queryForObject(
+            "select coalesce(max(version), 0) from book_change_log"
+                + " where version <= public.catalog_settled()",
+            Long.class);
+    Map<Position, List<BookChangeEvent>> reads = new HashMap<>();
+    for (Waiter w : waiters) {
+      if (w.at().after() >= head || w.result().isDone()) {
+        continue;
+      }
+      List<BookChangeEvent> events =
+          reads.computeIfAbsent(w.at(), at -> read(at.after(), at.limit()));
+      if (!events.isEmpty()) {
+        w.result().complete(events);
+      }
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${book.changes.prune-ms:3600000}")
+  public void prune() {
+    List<Long> pruned =
+        jdbc.queryForList(
+            """
+                with pruned as (
+                  delete from book_change_log
+                  where created_at < now() - make_interval(hours => ?)
+                  returning version
+                )
+                update book_change_log_pruned
+                set version = greatest(version, (select max(version) from pruned))
+                where exists (select 1 from pruned)
+                returning version
+                """,
+            Long.class,
+            retentionHours);
+    if (!pruned.isEmpty()) {
+      log.debug("Pruned the change log through version {}", pruned.get(0));
+    }
+  }
+}
@@ -0,0 +1,9 @@
+package com.rxlog.register.web;
+
+import java.util.List;
+
+/**
+ * Books changed after a catalog version, oldest change first. Pass {@code version} as the next
+ * {@code since}; while {@code hasMore} is set there are further changes to fetch right away.
+ */
+public record BookChanges(List<BookSearchResult> items, long version, boolean hasMore) {}
@@ -2,6 +2,8 @@ package com.rxlog.register.web;
 
 import java.util.List;
 import java.util.Set;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
@@ -12,20 +14,43 @@ import org.springframework.web.bind.annotation.*;
 public class BookController {
 
   private final BookDao dao;
+  private final BookSearchCache searchCache;
 
-  public BookController(BookDao dao) {
+  public BookController(BookDao dao, BookSearchCache searchCache) {
     this.dao = dao;
+    this.searchCache = searchCache;
   }
 
+  /**
+   * Admin search. Responses carry the catalog version as weak ETag; a matching {@code
+   * If-None-Match} is answered with 304 before any search runs. The version is only read when the
+   * request sends {@code If-None-Match} or its response carries it. With {@code since} (the version
+   * of an earlier change set, or the first number of an earlier ETag) the filters are ignored and
+   * the books changed since then are returned oldest first, for the client to apply to what it
+   * holds; the ETag is then the version the change set runs up to. A book may be returned more than
+   * once while writes around it settle. Deleted books are not reported.
+   */
   @GetMapping("/books")
-  public List<BookSearchResult> search(
+  public ResponseEntity<?> search(
       @RequestParam(required = false) String author,
       @RequestParam(required = false) String publisher,
       @RequestParam(name = "title", required = false) String titleKeywordLike,
       @RequestParam(required = false) String barcode,
       @RequestParam(required = false) String readingStatus,
       @RequestParam(required = false) String topBook,
-      @RequestParam(required = false, defaultValue = "20") Integer limit) {
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) String mode,
+      @RequestParam(required = false) String q,
+      @RequestParam(required = false) Long since,
+      @RequestParam(required = false, defaultValue = "20") Integer limit,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    CatalogVersion checked = StringUtils.hasText(ifNoneMatch) ? dao.catalogVersion() : null;
+    if (checked != null && BookSearchCache.notModified(ifNoneMatch, checked)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+          .eTag(BookSearchCache.etag(checked))
+          .build();
+    }
+
     Boolean top = null;
     if ("true".equalsIgnoreCase(topBook)) top = Boolean.TRUE;
     if ("false".equalsIgnoreCase(topBook)) top = Boolean.FALSE;
@@ -39,7 +64,46 @@ public class BookController {
 
     if (limit == null || limit <= 0 || limit > 500) limit = 20;
 
-    return dao.search(author, publisher, titleKeywordLike, barcode, rs, top, limit);
+    if (since != null) {
+      if (since < 0) {
+        return ResponseEntity.badRequest().body(java.util.Map.of("error", "invalid_since"));
+      }
+      BookChanges changes = dao.changesSince(since, limit);
+      return ResponseEntity.ok()
+          .eTag(BookSearchCache.etag(new CatalogVersion(changes.version(), 0, 0)))
+          .body(changes);
+    }
+
+    // read before the search, so the ETag never claims newer data than the result holds
+    CatalogVersion version = checked != null ? checked : dao.catalogVersion();
+
+    if (StringUtils.hasText(q)) {
+      return ResponseEntity.ok()
+          .eTag(BookSearchCache.etag(version))
+          .body(dao.fullText(q.trim(), rs, top, limit));
+    }
+
+    if ("similar".equalsIgnoreCase(mode)) {
+      BookSearchCache.Versioned<List<BookSearchResult>> similar =
+          searchCache.searchSimilar(version, author, publisher, titleKeywordLike, rs, top, limit);
+      return ResponseEntity.ok()
+          .eTag(similar.etag())
+          .body(new BookSearchPage(similar.value(), null));
+    }
+
+    BookSearchCursor after = null;
+    if (StringUtils.hasText(cursor)) {
+      try {
+        after = BookSearchCursor.decode(cursor.trim());
+      } catch (IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(java.util.Map.of("error", "invalid_cursor"));
+      }
+    }
+
+    BookSearchCache.Versioned<BookSearchPage> page =
+        searchCache.searchPage(
+            version, author, publisher, titleKeywordLike, barcode, rs, top, after, limit);
+    return ResponseEntity.ok().eTag(page.etag()).body(page.value());
   }
 
   @PatchMapping("/books/{id}")
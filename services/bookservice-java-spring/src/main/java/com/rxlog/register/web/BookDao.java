@@ -1,27 +1,71 @@
 package com.rxlog.register.web;
 
 import com.rxlog.register.api.RegisterBookRequest;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.Array;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.function.Supplier;
+import org.postgresql.PGStatement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
-/** JDBC-basierter Zugriff auf Bücher + Barcodes. */
+/**
+ * JDBC-basierter Zugriff auf Bücher + Barcodes.
+ *
+ * <p>Public methods are timed as {@code book.dao{method}}, every statement shape as {@code
+ * book.dao.sql{statement,filters}}; {@code filters} lists the search filters in use.
+ */
 @Repository
 public class BookDao {
 
   private final JdbcTemplate jdbc;
-  private final BarcodeClient barcodeClient;
+  private final ApplicationEventPublisher events;
+  private final MeterRegistry meters;
+  private final boolean projection;
 
-  public BookDao(JdbcTemplate jdbc, BarcodeClient barcodeClient) {
+  public BookDao(JdbcTemplate jdbc, ApplicationEventPublisher events, MeterRegistry meters) {
+    this(jdbc, events, meters, false);
+  }
+
+  /**
+   * @param projection read {@link #search} from book_search_view (V114) instead of books
+   */
+  @Autowired
+  public BookDao(
+      JdbcTemplate jdbc,
+      ApplicationEventPublisher events,
+      MeterRegistry meters,
+      @Value("${book.search.projection:false}") boolean projection) {
     this.jdbc = jdbc;
-    this.barcodeClient = barcodeClient;
+    this.events = events;
+    this.meters = meters;
+    this.projection = projection;
   }
 
-  private static BookSearchResult mapRow(ResultSet rs) throws SQLException {
+  private <T> T statement(String name, Supplier<T> call) {
+    return statement(name, "-", call);
+  }
+
+  private <T> T statement(String name, List<String> filters, Supplier<T> call) {
+    return statement(name, filters.isEmpty() ? "none" : String.join("+", filters), call);
+  }
+
+  private <T> T statement(String name, String filters, Supplier<T> call) {
+    return meters.timer("book.dao.sql", "statement", name, "filters", filters).record(call);
+  }
+
+  static BookSearchResult mapRow(ResultSet rs) throws SQLException {
     BookSearchResult r = new BookSearchResult();
     r.setId(rs.getString("id"));
     r.setAuthor(rs.getString("author"));
@@ -32,26 +76,73 @@ public class BookDao {
     r.setTopBook(top != null ? top : Boolean.FALSE);
     r.setWidth((Integer) rs.getObject("width"));
     r.setHeight((Integer) rs.getObject("height"));
-    String csv = rs.getString("barcodes_csv");
-    if (csv != null && !csv.isBlank()) {
-      String[] parts = csv.split(",");
-      List<String> list = new ArrayList<>();
-      for (String p : parts) {
-        String s = p.trim();
-        if (!s.isEmpty()) {
-          list.add(s);
-        }
-      }
-      r.setBarcodes(list);
-    } else {
-      r.setBarcodes(Collections.emptyList());
-    }
+    r.setRegisteredAt(rs.getObject("registered_at", OffsetDateTime.class));
+    r.setBarcodes(barcodes(rs.getArray("barcodes")));
     return r;
   }
 
+  /** Wraps the driver's String[] without copying; barcodes are stored trimmed and non-null. */
+  static List<String> barcodes(Array array) throws SQLException {
+    if (array == null) {
+      return Collections.emptyList();
+    }
+    try {
+      String[] codes = (String[]) array.getArray();
+      return codes.length == 0
+          ? Collections.emptyList()
+          : Collections.unmodifiableList(Arrays.asList(codes));
+    } finally {
+      array.free();
+    }
+  }
+
   // ------------------------------------------------------------
   // Search (for the Admin-UI)
   // ------------------------------------------------------------
+
+  static final String SEARCH_COLUMNS =
+      """
+          b.id,
+          b.author,
+          b.publisher,
+          b.pages,
+          b.reading_status,
+          b.top_book,
+          b.width,
+          b.height,
+          b.registered_at,
+          array(
+            select bb.barcode
+            from book_barcodes bb
+            where bb.book_id = b.id
+            order by bb.barcode
+          ) as barcodes
+          """;
+
+  /**
+   * Returns one page plus the cursor of the next one. Fetches one extra row to know whether a next
+   * page exists, so the last page never ends with an empty follow-up request.
+   */
+  @Timed(value = "book.dao", histogram = true)
+  public BookSearchPage searchPage(
+      String author,
+      String publisher,
+      String titleLike,
+      String barcode,
+      String readingStatus,
+      Boolean topBook,
+      BookSearchCursor after,
+      int limit) {
+    List<BookSearchResult> rows =
+        search(author, publisher, titleLike, barcode, readingStatus, topBook, after, limit + 1);
+    if (rows.size() <= limit) {
+      return new BookSearchPage(rows, null);
+    }
+    rows = rows.subList(0, limit);
+    return new BookSearchPage(rows, BookSearchCursor.after(rows.get(limit - 1)).encode());
+  }
+
+  @Timed(value = "book.dao", histogram = true)
   public List<BookSearchResult> search(
       String author,
       String publisher,
@@ -60,95 +151,470 @@ public class BookDao {
       String readingStatus,
       Boolean topBook,
       int limit) {
-    StringBuilder sql =
-        new StringBuilder(
-            """
-                select
-                  b.id,
-                  b.author,
-                  b.publisher,
-                  b.pages,
-                  b.reading_status,
-                  b.top_book,
-                  b.width,
-                  b.height,
-                  string_agg(distinct bb.barcode, ',') as barcodes_csv
-                from books b
-                left join book_barcodes bb on bb.book_id = b.id
-                """);
+    return search(author, publisher, titleLike, barcode, readingStatus, topBook, null, limit);
+  }
 
-    List<Object> args = new ArrayList<>();
+  /**
+   * Keyset search: rows strictly after {@code after} in {@code registered_at desc, id desc} order.
+   * Barcodes are aggregated per returned row only, so a deep page reads the same number of rows
+   * from books_registered_at_idx as the first one.
+   */
+  @Timed(value = "book.dao", histogram = true)
+  public List<BookSearchResult> search(
+      String author,
+      String publisher,
+      String titleLike,
+      String barcode,
+      String readingStatus,
+      Boolean topBook,
+      BookSearchCursor after,
+      int limit) {
+    SearchQuery q =
+        searchQuery(
+            projection,
+            author,
+            publisher,
+            titleLike,
+            barcode,
+            readingStatus,
+            topBook,
+            after,
+            limit);
+    return statement(
+        "search",
+        q.filters(),
+        () -> this.jdbc.query(q.sql(), (rs, i) -> mapRow(rs), q.args().toArray()));
+  }
+
+  /** SQL with {@code ?} placeholders, its arguments and the filters in use as metric tag. */
+  record SearchQuery(String sql, List<Object> args, String filters) {}
+
+  // Search filters by bit; conditions and their arguments always follow this order.
+  private static final int AUTHOR = 1;
+  private static final int PUBLISHER = 1 << 1;
+  private static final int TITLE = 1 << 2;
+  private static final int BARCODE = 1 << 3;
+  private static final int READING_STATUS = 1 << 4;
+  private static final int TOP_BOOK = 1 << 5;
+  private static final int CURSOR = 1 << 6;
+
+  private static final String[] SEARCH_FILTERS = {
+    "author", "publisher", "title", "barcode", "readingStatus", "topBook", "cursor"
+  };
+
+  private static final String[] SEARCH_CONDITIONS = {
+    "b.author ilike ?",
+    "b.publisher ilike ?",
+    "(b.title_keyword ilike ? or b.title_keyword2 ilike ? or b.title_keyword3 ilike ?)",
+    """
+    exists (
+      select 1 from book_barcodes bb2
+      where bb2.book_id = b.id and bb2.barcode = ?
+    )""",
+    "b.reading_status = ?",
+    "b.top_book = ?",
+    // registered_at is NOT NULL (V106), so "nulls last" never splits a page
+    "(b.registered_at, b.id) < (?, ?::uuid)"
+  };
+
+  /** The same filters on book_search_view, whose search_* columns are lower-cased. */
+  private static final String[] PROJECTION_CONDITIONS = {
+    "v.search_author like lower(?)",
+    "v.search_publisher like lower(?)",
+    "v.search_title like lower(?)",
+    "v.id in (select bb2.book_id from book_barcodes bb2 where bb2.barcode = ?)",
+    "v.reading_status = ?",
+    "v.top_book = ?",
+    "(v.registered_at, v.id) < (?, ?::uuid)"
+  };
+
+  /** Column names as in {@link #SEARCH_COLUMNS}, all covered by book_search_view_list_idx. */
+  private static final String PROJECTION_COLUMNS =
+      "v.id, v.author, v.publisher, v.pages, v.reading_status, v.top_book, v.width, v.height,"
+          + " v.registered_at, v.barcodes";
+
+  /**
+   * Search SQL and filter tag of every filter combination, indexed by bitmask. Built once, so equal
+   * filter sets always send the identical text and PgJDBC reuses the server-side statement.
+   */
+  private static final String[] SEARCH_SQL = new String[1 << SEARCH_FILTERS.length];
+
+  private static final String[] PROJECTION_SQL = new String[1 << SEARCH_FILTERS.length];
+
+  private static final String[] SEARCH_TAGS = new String[1 << SEARCH_FILTERS.length];
+
+  static {
+    for (int mask = 0; mask < SEARCH_SQL.length; mask++) {
+      List<String> filters = new ArrayList<>();
+      for (int bit = 0; bit < SEARCH_FILTERS.length; bit++) {
+        if ((mask & (1 << bit)) != 0) {
+          filters.add(SEARCH_FILTERS[bit]);
+        }
+      }
+      SEARCH_SQL[mask] = keysetSql(SEARCH_COLUMNS + " from books b", "b", SEARCH_CONDITIONS, mask);
+      PROJECTION_SQL[mask] =
+          keysetSql(
+              PROJECTION_COLUMNS + " from book_search_view v", "v", PROJECTION_CONDITIONS, mask);
+      SEARCH_TAGS[mask] = filters.isEmpty() ? "none" : String.join("+", filters);
+    }
+  }
+
+  private static String keysetSql(String from, String alias, String[] conditions, int mask) {
     List<String> where = new ArrayList<>();
+    for (int bit = 0; bit < conditions.length; bit++) {
+      if ((mask & (1 << bit)) != 0) {
+        where.add(conditions[bit]);
+      }
+    }
+    return "select "
+        + from
+        + " "
+        + (where.isEmpty() ? "" : "where " + String.join(" and ", where) + " ")
+        + "order by "
+        + alias
+        + ".registered_at desc nulls last, "
+        + alias
+        + ".id desc limit ?";
+  }
+
+  /**
+   * The keyset search statement on books or, with {@code projection}, on book_search_view; shared
+   * with the R2DBC stream in {@link BookStreamDao}.
+   */
+  static SearchQuery searchQuery(
+      boolean projection,
+      String author,
+      String publisher,
+      String titleLike,
+      String barcode,
+      String readingStatus,
+      Boolean topBook,
+      BookSearchCursor after,
+      int limit) {
+    int mask = 0;
+    List<Object> args = new ArrayList<>(12);
 
     if (StringUtils.hasText(author)) {
-      where.add("b.author ilike ?");
+      mask |= AUTHOR;
       args.add("%" + author.trim() + "%");
     }
     if (StringUtils.hasText(publisher)) {
-      where.add("b.publisher ilike ?");
+      mask |= PUBLISHER;
       args.add("%" + publisher.trim() + "%");
     }
     if (StringUtils.hasText(titleLike)) {
-      where.add(
-          "(b.title_keyword ilike ? or b.title_keyword2 ilike ? or b.title_keyword3 ilike ?)");
+      mask |= TITLE;
       String pat = "%" + titleLike.trim() + "%";
       args.add(pat);
-      args.add(pat);
-      args.add(pat);
+      if (!projection) {
+        args.add(pat);
+        args.add(pat);
+      }
     }
     if (StringUtils.hasText(barcode)) {
-      where.add(
-          """
-                    exists (
-                      select 1 from book_barcodes bb2
-                      where bb2.book_id = b.id and bb2.barcode = ?
-                    )
-                    """);
+      mask |= BARCODE;
       args.add(barcode.trim());
     }
     if (StringUtils.hasText(readingStatus)) {
-      where.add("b.reading_status = ?");
-      args.add(readingStatus.trim());
+      mask |= READING_STATUS;
+      args.add(readingStatus(readingStatus));
     }
     if (topBook != null) {
-      where.add("b.top_book = ?");
+      mask |= TOP_BOOK;
       args.add(topBook);
     }
+    if (after != null) {
+      mask |= CURSOR;
+      args.add(after.registeredAtUtc());
+      args.add(after.id().toString());
+    }
+    args.add(limit);
+
+    return new SearchQuery(
+        projection ? PROJECTION_SQL[mask] : SEARCH_SQL[mask], args, SEARCH_TAGS[mask]);
+  }
+
+  private static final String SIMILARITY_THRESHOLD = "0.4";
 
-    if (!where.isEmpty()) {
-      sql.append(" where ").append(String.join(" and ", where)).append(" ");
+  /** A reading status filter as stored: trimmed and lower case. */
+  static String readingStatus(String filter) {
+    return filter.trim().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * The catalog version (V112): the settled version plus a digest of the books stamped above it.
+   * Any write that becomes visible changes it, and everything read after this call reflects at
+   * least this version.
+   */
+  public CatalogVersion catalogVersion() {
+    return statement(
+        "catalog_version",
+        () ->
+            jdbc.queryForObject(
+                """
+                    select s.settled, count(b.change_version)::int as pending,
+                           coalesce(sum(hashint8(b.change_version)), 0) as digest
+                    from (select public.catalog_settled() as settled) s
+                    left join books b on b.change_version > s.settled
+                    group by s.settled
+                    """,
+                (rs, i) ->
+                    new CatalogVersion(
+                        rs.getLong("settled"), rs.getInt("pending"), rs.getLong("digest"))));
+  }
+
+  /**
+   * Books whose change version is above {@code since}, oldest change first, whatever the search
+   * filters: a book that left a filtered view has to reach the client as well. Books stamped above
+   * the settled version are sent along, but the returned version does not move past the settled
+   * one, so they are sent again until the writes around them have settled.
+   */
+  @Timed(value = "book.dao", histogram = true)
+  public BookChanges changesSince(long since, int limit) {
+    long settled =
+        statement(
+            "catalog_settled",
+            () -> jdbc.queryForObject("select public.catalog_settled()", Long.class));
+    List<Long> versions = new ArrayList<>();
+    List<BookSearchResult> rows =
+        statement(
+            "changes_since",
+            () ->
+                this.jdbc.query(
+                    "select "
+                        + SEARCH_COLUMNS
+                        + ", b.change_version from books b"
+                        + " where b.change_version > ? order by b.change_version limit ?",
+                    (rs, i) -> {
+                      versions.add(rs.getLong("change_version"));
+                      return mapRow(rs);
+                    },
+                    since,
+                    limit + 1));
+    if (rows.size() > limit && versions.get(limit) <= settled) {
+      return new BookChanges(rows.subList(0, limit), versions.get(limit - 1), true);
     }
+    return new BookChanges(
+        rows.subList(0, Math.min(rows.size(), limit)), Math.max(settled, since), false);
+  }
 
-    sql.append(
-        """
-                group by b.id
-                order by b.registered_at desc nulls last, b.id desc
-                limit ?
-                """);
+  /** Matches ranked by {@link #fullText} at most; a word in every title must not rank them all. */
+  static final int FULL_TEXT_CANDIDATES = 1000;
+
+  private static final String TS_QUERY =
+      "(websearch_to_tsquery('german', ?) || websearch_to_tsquery('simple', ?))";
+
+  /**
+   * Full-text search over title keywords, author and publisher (V115). {@code query} is in web
+   * search syntax (words, "phrases", -exclusions, or) and is parsed with both the german and the
+   * simple dictionary, so stemmed and exact matches count. The newest {@value
+   * #FULL_TEXT_CANDIDATES} matches are ranked by {@code ts_rank}, which weighs keywords by their
+   * title position, and the best {@code limit} are returned, newer books first among equal ranks;
+   * if more books matched, the page says so. Not paginated.
+   */
+  @Timed(value = "book.dao", histogram = true)
+  public BookFullTextPage fullText(String query, String readingStatus, Boolean topBook, int limit) {
+    List<Object> args = new ArrayList<>(List.of(query, query));
+    List<String> filters = new ArrayList<>(List.of("q"));
+    StringBuilder where = new StringBuilder("m.search_vector @@ " + TS_QUERY);
+    if (StringUtils.hasText(readingStatus)) {
+      where.append(" and m.reading_status = ?");
+      args.add(readingStatus(readingStatus));
+      filters.add("readingStatus");
+    }
+    if (topBook != null) {
+      where.append(" and m.top_book = ?");
+      args.add(topBook);
+      filters.add("topBook");
+    }
+    args.add(query);
+    args.add(query);
     args.add(limit);
 
-    return this.jdbc.query(sql.toString(), args.toArray(), (rs, i) -> mapRow(rs));
+    // One candidate more than is ranked tells whether the cap cut anything off. Few matches are
+    // found through the GIN index, many by walking books_registered_at_idx until the cap is full.
+    String sql =
+        "select "
+            + SEARCH_COLUMNS
+            + ", b.truncated from ("
+            + "select m.*, count(*) over () > "
+            + FULL_TEXT_CANDIDATES
+            + " as truncated,"
+            + " row_number() over (order by m.registered_at desc nulls last, m.id desc) as n"
+            + " from (select m.* from books m where "
+            + where
+            + " order by m.registered_at desc nulls last, m.id desc limit "
+            + (FULL_TEXT_CANDIDATES + 1)
+            + ") m) b where b.n <= "
+            + FULL_TEXT_CANDIDATES
+            + " order by ts_rank(b.search_vector, "
+            + TS_QUERY
+            + ") desc, b.registered_at desc nulls last, b.id desc"
+            + " limit ?";
+    boolean[] truncated = {false};
+    List<BookSearchResult> items =
+        statement(
+            "full_text",
+            filters,
+            () ->
+                this.jdbc.query(
+                    con -> {
+                      // Plan every execution for its words: a generic plan cannot tell a rare word
+                      // from one in every title and picks the wrong one of the two paths above.
+                      PreparedStatement ps = con.prepareStatement(sql);
+                      ps.unwrap(PGStatement.class).setPrepareThreshold(0);
+                      new ArgumentPreparedStatementSetter(args.toArray()).setValues(ps);
+                      return ps;
+                    },
+                    (rs, i) -> {
+                      truncated[0] = rs.getBoolean("truncated");
+                      return mapRow(rs);
+                    }));
+    return new BookFullTextPage(items, truncated[0]);
+  }
+
+  /**
+   * Typo-tolerant "did you mean" search: every given text filter must word-match its column ({@code
+   * <%}, served by the trigram GIN indexes from V107) and rows are ranked by the summed word
+   * similarity. Not paginated; callers only ever want the best few hits.
+   */
+  @Timed(value = "book.dao", histogram = true)
+  @Transactional(readOnly = true)
+  public List<BookSearchResult> searchSimilar(
+      String author,
+      String publisher,
+      String titleLike,
+      String readingStatus,
+      Boolean topBook,
+      int limit) {
+    List<Object> scoreArgs = new ArrayList<>();
+    List<String> score = new ArrayList<>();
+    List<Object> args = new ArrayList<>();
+    List<String> where = new ArrayList<>();
+    List<String> filters = new ArrayList<>();
+
+    if (StringUtils.hasText(author)) {
+      filters.add("author");
+      String term = author.trim();
+      where.add("? <% b.author");
+      args.add(term);
+      score.add("word_similarity(?, b.author)");
+      scoreArgs.add(term);
+    }
+    if (StringUtils.hasText(publisher)) {
+      filters.add("publisher");
+      String term = publisher.trim();
+      where.add("? <% b.publisher");
+      args.add(term);
+      score.add("word_similarity(?, b.publisher)");
+      scoreArgs.add(term);
+    }
+    if (StringUtils.hasText(titleLike)) {
+      filters.add("title");
+      String term = titleLike.trim();
+      where.add("(? <% b.title_keyword or ? <% b.title_keyword2 or ? <% b.title_keyword3)");
+      args.add(term);
+      args.add(term);
+      args.add(term);
+      score.add(
+          """
+              coalesce(greatest(
+                word_similarity(?, b.title_keyword),
+                word_similarity(?, b.title_keyword2),
+                word_similarity(?, b.title_keyword3)), 0)
+              """);
+      scoreArgs.add(term);
+      scoreArgs.add(term);
+      scoreArgs.add(term);
+    }
+    if (score.isEmpty()) {
+      return Collections.emptyList();
+    }
+    if (StringUtils.hasText(readingStatus)) {
+      where.add("b.reading_status = ?");
+      args.add(readingStatus(readingStatus));
+      filters.add("readingStatus");
+    }
+    if (topBook != null) {
+      where.add("b.top_book = ?");
+      args.add(topBook);
+      filters.add("topBook");
+    }
+
+    // The 0.6 default rejects most single-letter typos in short names; scoped to this transaction.
+    statement(
+        "set_similarity_threshold",
+        () ->
+            this.jdbc.queryForObject(
+                "select set_config('pg_trgm.word_similarity_threshold', ?, true)",
+                String.class,
+                SIMILARITY_THRESHOLD));
+
+    String sql =
+        "select "
+            + SEARCH_COLUMNS
+            + ", "
+            + String.join(" + ", score)
+            + " as score from books b where "
+            + String.join(" and ", where)
+            + " order by score desc, b.registered_at desc, b.id desc limit ?";
+    List<Object> all = new ArrayList<>(scoreArgs);
+    all.addAll(args);
+    all.add(limit);
+
+    return statement(
+        "search_similar",
+        filters,
+        () -> this.jdbc.query(sql, (rs, i) -> mapRow(rs), all.toArray()));
   }
 
   // ------------------------------------------------------------
   // Partial-Update (Admin-UI)
   // ------------------------------------------------------------
 
+  // Assignments per updatable field, by bit; arguments follow the same order.
+  private static final String[] UPDATE_SETS = {
+    "pages = ?",
+    "reading_status = ?, reading_status_updated_at = now()",
+    // the value is bound twice: true sets the timestamp once, false leaves it alone
+    "top_book = ?, top_book_set_at = coalesce(top_book_set_at, case when ? then now() end)",
+    "width = ?",
+    "height = ?"
+  };
+
+  private static final int UPDATE_FIELDS = UPDATE_SETS.length;
+
+  /** The update statement of every field combination, indexed by bitmask (0 is unused). */
+  private static final String[] UPDATE_SQL = new String[1 << UPDATE_FIELDS];
+
+  static {
+    for (int mask = 1; mask < UPDATE_SQL.length; mask++) {
+      StringJoiner sets = new StringJoiner(", ", "update books set ", " where id = ?::uuid");
+      for (int bit = 0; bit < UPDATE_FIELDS; bit++) {
+        if ((mask & (1 << bit)) != 0) {
+          sets.add(UPDATE_SETS[bit]);
+        }
+      }
+      UPDATE_SQL[mask] = sets.toString();
+    }
+  }
+
+  @Timed(value = "book.dao", histogram = true)
   @Transactional
   public boolean partialUpdate(String id, BookUpdateRequest req) {
-    List<String> sets = new ArrayList<>();
-    List<Object> args = new ArrayList<>();
+    int mask = 0;
+    Object[] args = new Object[UPDATE_FIELDS + 2];
+    int n = 0;
     boolean freeBarcodes = false;
 
     if (req.getPages() != null) {
-      sets.add("pages = ?");
-      args.add(req.getPages());
+      mask |= 1;
+      args[n++] = req.getPages();
     }
 
     if (req.getReadingStatus() != null) {
-      sets.add("reading_status = ?");
-      args.add(req.getReadingStatus());
-      sets.add("reading_status_updated_at = now()");
+      mask |= 1 << 1;
+      args[n++] = req.getReadingStatus();
 
       String rs = req.getReadingStatus();
       // If status becomes finished or abandoned, we will erase all barcodes for this book
@@ -158,53 +624,63 @@ public class BookDao {
     }
 
     if (req.getTopBook() != null) {
-      sets.add("top_book = ?");
-      args.add(req.getTopBook());
-      if (Boolean.TRUE.equals(req.getTopBook())) {
-        sets.add("top_book_set_at = coalesce(top_book_set_at, now())");
-      }
+      mask |= 1 << 2;
+      args[n++] = req.getTopBook();
+      args[n++] = req.getTopBook();
     }
 
     if (req.getWidth() != null) {
-      sets.add("width = ?");
-      args.add(req.getWidth());
+      mask |= 1 << 3;
+      args[n++] = req.getWidth();
     }
 
     if (req.getHeight() != null) {
-      sets.add("height = ?");
-      args.add(req.getHeight());
+      mask |= 1 << 4;
+      args[n++] = req.getHeight();
     }
 
     int updated = 0;
-    if (!sets.isEmpty()) {
-      String sql = "update books set " + String.join(", ", sets) + " where id = ?::uuid";
-      args.add(id);
-      updated = this.jdbc.update(sql, args.toArray());
+    if (mask != 0) {
+      args[n++] = id;
+      Object[] bound = Arrays.copyOf(args, n);
+      String sql = UPDATE_SQL[mask];
+      updated = statement("update_book", () -> this.jdbc.update(sql, bound));
     }
 
     // --- Barcode handling ------------------------------------
 
-    if (freeBarcodes) {
-      // 1) Load all barcodes currently attached to this book
-      List<String> codes =
-          this.jdbc.query(
-              "select barcode from book_barcodes where book_id = ?::uuid",
-              (rs, i) -> rs.getString(1),
-              id);
-
-      // 2) Tell the barcode service to release them (update in-memory used set)
-      for (String code : codes) {
-        barcodeClient.release(code);
-      }
-
-      // 3) Delete them from DB so they are not considered used on restart
-      this.jdbc.update("delete from book_barcodes where book_id = ?::uuid", id);
-      ++updated;
-
-    } else if (req.getBarcodes() != null) {
+    if (freeBarcodes && updated > 0) {
+      // Detach the codes and put them back into stock (unless another book still holds them); the
+      // change log entry tells feed consumers which codes were released.
+      statement(
+          "free_barcodes",
+          () ->
+              this.jdbc.update(
+                  """
+                      with freed as (
+                        delete from book_barcodes where book_id = ?::uuid returning barcode
+                      ),
+                      restocked as (
+                        update public.barcodes b set is_available = true, updated_at = now()
+                        where b.code in (select barcode from freed)
+                          and not b.is_available
+                          and not exists (
+                            select 1 from book_barcodes bb
+                            where bb.barcode = b.code and bb.book_id <> ?::uuid
+                          )
+                      )
+                      insert into book_change_log (version, kind, book_id, barcodes)
+                      select public.catalog_bump(), ?, ?::uuid, array_agg(barcode order by barcode)
+                      from freed
+                      having count(*) > 0
+                      """,
+                  id,
+                  id,
+                  BookChangeEvent.BARCODES_RELEASED,
+                  id));
+
+    } else if (req.getBarcodes() != null && (mask == 0 || updated > 0)) {
       // Replace barcodes if explicitly provided in the request
-      this.jdbc.update("delete from book_barcodes where book_id = ?::uuid", id);
-
       LinkedHashSet<String> uniq = new LinkedHashSet<>();
       for (String b : req.getBarcodes()) {
         if (b != null) {
@@ -215,14 +691,60 @@ public class BookDao {
         }
       }
 
-      for (String code : uniq) {
-        this.jdbc.update(
-            "insert into book_barcodes (book_id, barcode) values (?::uuid, ?)", id, code);
-      }
-
-      ++updated;
+      // Diff in one round-trip: drop codes that are no longer wanted, add the missing ones and
+      // let book_barcodes_book_id_barcode_uq skip those already attached. The pool's flags follow:
+      // dropped codes go back into stock, added ones are taken. Nothing is taken or attached for an
+      // unknown id, and the statement reports whether the book exists.
+      String[] codes = uniq.toArray(new String[0]);
+      updated +=
+          statement(
+              "replace_barcodes",
+              () ->
+                  this.jdbc.queryForObject(
+                      """
+                      with book as (
+                        select id from books where id = ?::uuid
+                      ),
+                      removed as (
+                        delete from book_barcodes
+                        where book_id = ?::uuid and barcode <> all(?::text[])
+                        returning barcode
+                      ),
+                      restocked as (
+                        update public.barcodes b set is_available = true, updated_at = now()
+                        where b.code in (select barcode from removed)
+                          and not b.is_available
+                          and not exists (
+                            select 1 from book_barcodes bb
+                            where bb.barcode = b.code and bb.book_id <> ?::uuid
+                          )
+                      ),
+                      taken as (
+                        update public.barcodes set is_available = false, updated_at = now()
+                        where code = any(?::text[]) and is_available
+                          and exists (select 1 from book)
+                      ),
+                      attached as (
+                        insert into book_barcodes (book_id, barcode)
+                        select book.id, code from book cross join unnest(?::text[]) as code
+                        on conflict (book_id, barcode) do nothing
+                      )
+                      select count(*)::int from book
+                      """,
+                      Integer.class,
+                      id,
+                      id,
+                      codes,
+                      id,
+                      codes,
+                      codes));
     }
 
+    // updated is 0 for an unknown id: nothing is logged or published for it
+    if (updated > 0) {
+      logChanges(BookChangeEvent.BOOK_UPDATED, new String[] {id});
+      events.publishEvent(new BookUpdatedEvent(id, req));
+    }
     return updated > 0;
   }
 
@@ -231,6 +753,7 @@ public class BookDao {
   // ------------------------------------------------------------
 
   /** Creates a new book + its barcode and returns the generated ID */
+  @Timed(value = "book.dao", histogram = true)
   @Transactional
   public String insert(RegisterBookRequest req) {
     boolean top = req.topBook() != null && req.topBook();
@@ -268,36 +791,174 @@ public class BookDao {
                 """;
 
     String id =
-        jdbc.queryForObject(
-            sql,
-            new Object[] {
-              req.author(),
-              req.publisher(),
-              req.pages(),
-              req.titleKeyword(),
-              req.titleKeywordPosition(),
-              req.titleKeyword2(),
-              req.titleKeyword2Position(),
-              req.titleKeyword3(),
-              req.titleKeyword3Position(),
-              req.width(),
-              req.height(),
-              req.readingStatus(),
-              top
-            },
-            String.class);
+        statement(
+            "insert_book",
+            () ->
+                jdbc.queryForObject(
+                    sql,
+                    String.class,
+                    req.author(),
+                    req.publisher(),
+                    req.pages(),
+                    req.titleKeyword(),
+                    req.titleKeywordPosition(),
+                    req.titleKeyword2(),
+                    req.titleKeyword2Position(),
+                    req.titleKeyword3(),
+                    req.titleKeyword3Position(),
+                    req.width(),
+                    req.height(),
+                    req.readingStatus(),
+                    top));
 
     if (id == null) {
       throw new IllegalStateException("Insert returned null id");
     }
 
     if (req.barcode() != null && !req.barcode().isBlank()) {
-      jdbc.update(
-          "insert into book_barcodes (book_id, barcode) values (?::uuid, ?)",
-          id,
-          req.barcode().trim());
+      statement(
+          "insert_barcode",
+          () ->
+              jdbc.update(
+                  "insert into book_barcodes (book_id, barcode) values (?::uuid, ?)",
+                  id,
+                  req.barcode().trim()));
     }
 
+    logChanges(BookChangeEvent.BOOK_INSERTED, new String[] {id});
+    events.publishEvent(new BooksInsertedEvent(List.of(id), List.of(req)));
     return id;
   }
+
+  /**
+   * Multi-row variant of {@link #insert} for bulk registration: one statement for all books and one
+   * for all barcodes of the chunk, fed through unnest() arrays. IDs are generated here so the
+   * barcodes can reference them without a round-trip. Returns the IDs in input order.
+   */
+  @Timed(value = "book.dao", histogram = true)
+  @Transactional
+  public List<String> insertAll(List<RegisterBookRequest> reqs) {
+    int n = reqs.size();
+    String[] ids = new String[n];
+    String[] authors = new String[n];
+    String[] publishers = new String[n];
+    Integer[] pages = new Integer[n];
+    String[] kw1 = new String[n];
+    Integer[] kw1Pos = new Integer[n];
+    String[] kw2 = new String[n];
+    Integer[] kw2Pos = new Integer[n];
+    String[] kw3 = new String[n];
+    Integer[] kw3Pos = new Integer[n];
+    Integer[] widths = new Integer[n];
+    Integer[] heights = new Integer[n];
+    String[] statuses = new String[n];
+    Boolean[] tops = new Boolean[n];
+    List<String> barcodeBookIds = new ArrayList<>(n);
+    List<String> barcodes = new ArrayList<>(n);
+
+    for (int i = 0; i < n; i++) {
+      RegisterBookRequest req = reqs.get(i);
+      ids[i] = UUID.randomUUID().toString();
+      authors[i] = req.author();
+      publishers[i] = req.publisher();
+      pages[i] = req.pages();
+      kw1[i] = req.titleKeyword();
+      kw1Pos[i] = req.titleKeywordPosition();
+      kw2[i] = req.titleKeyword2();
+      kw2Pos[i] = req.titleKeyword2Position();
+      kw3[i] = req.titleKeyword3();
+      kw3Pos[i] = req.titleKeyword3Position();
+      widths[i] = req.width();
+      heights[i] = req.height();
+      statuses[i] = req.readingStatus();
+      tops[i] = req.topBook() != null && req.topBook();
+      if (req.barcode() != null && !req.barcode().isBlank()) {
+        barcodeBookIds.add(ids[i]);
+        barcodes.add(req.barcode().trim());
+      }
+    }
+
+    statement(
+        "insert_books_batch",
+        () ->
+            jdbc.update(
+                """
+            insert into books (
+                id,
+                author,
+                publisher,
+                pages,
+                title_keyword,
+                title_keyword_position,
+                title_keyword2,
+                title_keyword2_position,
+                title_keyword3,
+                title_keyword3_position,
+                width,
+                height,
+                reading_status,
+                top_book,
+                registered_at,
+                reading_status_updated_at
+            )
+            select r.*, now(), now()
+            from unnest(
+                ?::uuid[], ?::text[], ?::text[], ?::int[],
+                ?::text[], ?::int[],
+                ?::text[], ?::int[],
+                ?::text[], ?::int[],
+                ?::int[], ?::int[],
+                ?::text[], ?::boolean[]
+            ) as r
+            """,
+                ids,
+                authors,
+                publishers,
+                pages,
+                kw1,
+                kw1Pos,
+                kw2,
+                kw2Pos,
+                kw3,
+                kw3Pos,
+                widths,
+                heights,
+                statuses,
+                tops));
+
+    if (!barcodes.isEmpty()) {
+      statement(
+          "insert_barcodes_batch",
+          () ->
+              jdbc.update(
+                  """
+                      insert into book_barcodes (book_id, barcode)
+                      select * from unnest(?::uuid[], ?::text[])
+                      on conflict (book_id, barcode) do nothing
+                      """,
+                  barcodeBookIds.toArray(new String[0]),
+                  barcodes.toArray(new String[0])));
+    }
+
+    logChanges(BookChangeEvent.BOOK_INSERTED, ids);
+    List<String> inserted = Arrays.asList(ids);
+    events.publishEvent(new BooksInsertedEvent(inserted, List.copyOf(reqs)));
+    return inserted;
+  }
+
+  /**
+   * Appends to book_change_log (V113) in the caller's transaction; read by {@link BookChangeFeed}.
+   */
+  private void logChanges(String kind, String[] ids) {
+    statement(
+        "log_changes",
+        () ->
+            jdbc.update(
+                """
+                    insert into book_change_log (version, kind, book_id)
+                    select public.catalog_bump(), ?, id from unnest(?::uuid[]) as id
+                    """,
+                kind,
+                ids));
+  }
 }
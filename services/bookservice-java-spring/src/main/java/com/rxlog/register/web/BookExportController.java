@@ -0,0 +1,94 @@
+package com.rxlog.register.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Full catalog dump for inventory audits. Rows go from the database cursor straight into the
+ * response, so memory use does not depend on the size of the catalog.
+ */
+@RestController
+@RequestMapping("/api/register")
+public class BookExportController {
+
+  private static final Logger log = LoggerFactory.getLogger(BookExportController.class);
+
+  private static final List<String> FORMATS = List.of("csv", "ndjson");
+
+  private final BookExportDao exportDao;
+  private final ObjectMapper objectMapper;
+
+  public BookExportController(BookExportDao exportDao, ObjectMapper objectMapper) {
+    this.exportDao = exportDao;
+    this.objectMapper = objectMapper;
+  }
+
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> export(
+      @RequestParam(value = "format", required = false, defaultValue = "csv") String format,
+      @RequestParam(value = "gzip", required = false, defaultValue = "true") boolean gzip) {
+
+    String f = format.trim().toLowerCase(Locale.ROOT);
+    if (!FORMATS.contains(f)) {
+      // the body type is fixed by the streaming return value handler, so the error is streamed too
+      Map<String, Object> error = Map.of("error", "unsupported_format", "allowed", FORMATS);
+      return ResponseEntity.badRequest()
+          .contentType(MediaType.APPLICATION_JSON)
+          .body(out -> objectMapper.writeValue(out, error));
+    }
+
+    MediaType type =
+        gzip
+            ? MediaType.parseMediaType("application/gzip")
+            : "csv".equals(f)
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.APPLICATION_NDJSON;
+    String filename = "books-" + LocalDate.now(ZoneOffset.UTC) + "." + f + (gzip ? ".gz" : "");
+
+    StreamingResponseBody body =
+        out -> {
+          long started = System.nanoTime();
+          OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+          long rows;
+          try (BookExportWriter writer =
+              "csv".equals(f)
+                  ? BookExportWriter.csv(target)
+                  : BookExportWriter.ndjson(target, objectMapper.writer())) {
+            rows = exportDao.export(writer);
+          }
+          if (target instanceof GZIPOutputStream zipped) {
+            zipped.finish();
+          }
+          log.info(
+              "Exported {} books as {} in {} ms",
+              rows,
+              filename,
+              (System.nanoTime() - started) / 1_000_000);
+        };
+
+    return ResponseEntity.ok()
+        .contentType(type)
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename(filename).build().toString())
+        .body(body);
+  }
+}
@@ -0,0 +1,99 @@
+package com.rxlog.register.web;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.function.Consumer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Reads the whole catalog for the export. pgJDBC only fetches in batches (a server-side portal)
+ * when autocommit is off and a fetch size is set; otherwise it buffers the complete result. So the
+ * scan runs in a read-only transaction and hands each row on as soon as it is mapped.
+ */
+@Repository
+public class BookExportDao {
+
+  private static final String SQL =
+      """
+          select b.id,
+                 b.author,
+                 b.publisher,
+                 b.pages,
+                 b.title_keyword,
+                 b.title_keyword_position,
+                 b.title_keyword2,
+                 b.title_keyword2_position,
+                 b.title_keyword3,
+                 b.title_keyword3_position,
+                 b.width,
+                 b.height,
+                 b.reading_status,
+                 b.reading_status_updated_at,
+                 b.top_book,
+                 b.top_book_set_at,
+                 b.registered_at,
+                 array(
+                   select bb.barcode
+                   from book_barcodes bb
+                   where bb.book_id = b.id
+                   order by bb.barcode
+                 ) as barcodes
+          from books b
+          order by b.registered_at desc nulls last, b.id desc
+          """;
+
+  private final JdbcTemplate jdbc;
+  private final int fetchSize;
+
+  public BookExportDao(JdbcTemplate jdbc, @Value("${book.export.fetch-size:1000}") int fetchSize) {
+    this.jdbc = jdbc;
+    this.fetchSize = fetchSize;
+  }
+
+  /** Passes every book to {@code sink}, newest first, and returns how many there were. */
+  @Transactional(readOnly = true)
+  public long export(Consumer<BookExportRow> sink) {
+    long[] rows = {0};
+    jdbc.query(
+        con -> {
+          PreparedStatement ps =
+              con.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+          ps.setFetchSize(fetchSize);
+          return ps;
+        },
+        (RowCallbackHandler)
+            rs -> {
+              sink.accept(mapRow(rs));
+              rows[0]++;
+            });
+    return rows[0];
+  }
+
+  private static BookExportRow mapRow(ResultSet rs) throws SQLException {
+    return new BookExportRow(
+        rs.getString("id"),
+        rs.getString("author"),
+        rs.getString("publisher"),
+        (Integer) rs.getObject("pages"),
+        rs.getString("title_keyword"),
+        (Integer) rs.getObject("title_keyword_position"),
+        rs.getString("title_keyword2"),
+        (Integer) rs.getObject("title_keyword2_position"),
+        rs.getString("title_keyword3"),
+        (Integer) rs.getObject("title_keyword3_position"),
+        (Integer) rs.getObject("width"),
+        (Integer) rs.getObject("height"),
+        rs.getString("reading_status"),
+        rs.getObject("reading_status_updated_at", OffsetDateTime.class),
+        rs.getBoolean("top_book"),
+        rs.getObject("top_book_set_at", OffsetDateTime.class),
+        rs.getObject("registered_at", OffsetDateTime.class),
+        BookDao.barcodes(rs.getArray("barcodes")));
+  }
+}
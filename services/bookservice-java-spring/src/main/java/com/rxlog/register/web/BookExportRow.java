@@ -0,0 +1,47 @@
+package com.rxlog.register.web;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/** One line of the catalog export: every column of {@code books} plus its barcodes. */
+public record BookExportRow(
+    String id,
+    String author,
+    String publisher,
+    Integer pages,
+    String titleKeyword,
+    Integer titleKeywordPosition,
+    String titleKeyword2,
+    Integer titleKeyword2Position,
+    String titleKeyword3,
+    Integer titleKeyword3Position,
+    Integer width,
+    Integer height,
+    String readingStatus,
+    OffsetDateTime readingStatusUpdatedAt,
+    boolean topBook,
+    OffsetDateTime topBookSetAt,
+    OffsetDateTime registeredAt,
+    List<String> barcodes) {
+
+  static final List<String> COLUMNS =
+      List.of(
+          "id",
+          "author",
+          "publisher",
+          "pages",
+          "title_keyword",
+          "title_keyword_position",
+          "title_keyword2",
+          "title_keyword2_position",
+          "title_keyword3",
+          "title_keyword3_position",
+          "width",
+          "height",
+          "reading_status",
+          "reading_status_updated_at",
+          "top_book",
+          "top_book_set_at",
+          "registered_at",
+          "barcodes");
+}
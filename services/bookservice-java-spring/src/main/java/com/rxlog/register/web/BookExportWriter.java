@@ -0,0 +1,124 @@
+package com.rxlog.register.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
+
+/**
+ * Encodes export rows onto a stream as they arrive; nothing but the output buffer is held. {@link
+ * #close()} flushes the buffer but leaves the stream open.
+ */
+abstract class BookExportWriter implements Consumer<BookExportRow>, AutoCloseable {
+
+  private static final int BUFFER = 64 * 1024;
+
+  protected final Writer out;
+
+  private BookExportWriter(OutputStream out) {
+    this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER);
+  }
+
+  /** RFC 4180 with a header line; barcodes are joined with ';', timestamps are ISO-8601. */
+  static BookExportWriter csv(OutputStream out) {
+    return new BookExportWriter(out) {
+      private boolean header;
+
+      @Override
+      protected void write(BookExportRow r) throws IOException {
+        if (!header) {
+          out.write(String.join(",", BookExportRow.COLUMNS));
+          out.write("\r\n");
+          header = true;
+        }
+        Object[] values = {
+          r.id(),
+          r.author(),
+          r.publisher(),
+          r.pages(),
+          r.titleKeyword(),
+          r.titleKeywordPosition(),
+          r.titleKeyword2(),
+          r.titleKeyword2Position(),
+          r.titleKeyword3(),
+          r.titleKeyword3Position(),
+          r.width(),
+          r.height(),
+          r.readingStatus(),
+          r.readingStatusUpdatedAt(),
+          r.topBook(),
+          r.topBookSetAt(),
+          r.registeredAt(),
+          String.join(";", r.barcodes())
+        };
+        for (int i = 0; i < values.length; i++) {
+          if (i > 0) {
+            out.write(',');
+          }
+          Object value = values[i];
+          if (value instanceof OffsetDateTime ts) {
+            out.write(ts.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+          } else if (value instanceof String s) {
+            text(s);
+          } else if (value != null) {
+            out.write(value.toString());
+          }
+        }
+        out.write("\r\n");
+      }
+
+      private void text(String s) throws IOException {
+        if (s.indexOf(',') < 0
+            && s.indexOf('"') < 0
+            && s.indexOf('\n') < 0
+            && s.indexOf('\r') < 0) {
+          out.write(s);
+          return;
+        }
+        out.write('"');
+        out.write(s.replace("\"", "\"\""));
+        out.write('"');
+      }
+    };
+  }
+
+  /** One JSON object per line, in the same shape the search API uses for its fields. */
+  static BookExportWriter ndjson(OutputStream out, ObjectWriter writer) {
+    ObjectWriter json =
+        writer
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    return new BookExportWriter(out) {
+      @Override
+      protected void write(BookExportRow r) throws IOException {
+        json.writeValue(out, r);
+        out.write('\n');
+      }
+    };
+  }
+
+  protected abstract void write(BookExportRow row) throws IOException;
+
+  @Override
+  public void accept(BookExportRow row) {
+    try {
+      write(row);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.flush();
+  }
+}
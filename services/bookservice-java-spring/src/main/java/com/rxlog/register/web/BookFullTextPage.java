@@ -0,0 +1,10 @@
+package com.rxlog.register.web;
+
+import java.util.List;
+
+/**
+ * Full-text results, best match first. {@code truncated} is set when more books matched than {@link
+ * BookDao#fullText} ranks; only the newest of them were ranked, so a narrower query may find better
+ * matches.
+ */
+public record BookFullTextPage(List<BookSearchResult> items, boolean truncated) {}
@@ -0,0 +1,346 @@
+package com.rxlog.register.web;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rxlog.register.api.RegisterBookRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ETag;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.StringUtils;
+
+/**
+ * Read-through cache in front of the admin search in {@link BookDao}, keyed by the normalized
+ * filter tuple (text filters trimmed and lower-cased, since they are matched with ilike).
+ *
+ * <p>Entries are dropped once the write that affects them has committed: an insert evicts the first
+ * pages whose filters the new book matches (deeper pages sort before it and cannot change), an
+ * update evicts every entry that contains the book plus those it may have moved into. Loads that
+ * overlap a write are not stored, so a reader never caches a snapshot from before the commit.
+ *
+ * <p>Every result comes with the catalog version read before it was loaded ({@link
+ * BookDao#catalogVersion}), which callers use as ETag. Writes of other instances never reach the
+ * listeners, so a hit whose version differs from the caller's is checked against the books changed
+ * since it was loaded ({@link BookDao#changesSince}): if none of them can be part of it, it is kept
+ * and relabelled with the caller's version, otherwise it is reloaded.
+ *
+ * <p>Hit, miss and eviction counts are published as {@code cache.*{cache=bookSearch}} meters.
+ */
+@Component
+public class BookSearchCache {
+
+  private enum Kind {
+    PAGE,
+    LIST,
+    SIMILAR
+  }
+
+  record Key(
+      Kind kind,
+      String author,
+      String publisher,
+      String title,
+      String barcode,
+      String readingStatus,
+      Boolean topBook,
+      BookSearchCursor after,
+      int limit) {
+
+    /** Could one of the new books show up in this result? */
+    boolean affectedBy(List<RegisterBookRequest> books) {
+      if (after != null && kind != Kind.SIMILAR) {
+        return false; // new rows are the newest and sort before every cursor
+      }
+      for (RegisterBookRequest b : books) {
+        if (matches(b)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean matches(RegisterBookRequest b) {
+      if (readingStatus != null && !readingStatus.equals(status(b.readingStatus()))) return false;
+      if (topBook != null && topBook != Boolean.TRUE.equals(b.topBook())) return false;
+      if (kind == Kind.SIMILAR) return true; // similarity is not worth re-implementing here
+      if (barcode != null && (b.barcode() == null || !barcode.equals(b.barcode().trim()))) {
+        return false;
+      }
+      return contains(b.author(), author)
+          && contains(b.publisher(), publisher)
+          && (title == null
+              || contains(b.titleKeyword(), title)
+              || contains(b.titleKeyword2(), title)
+              || contains(b.titleKeyword3(), title));
+    }
+
+    /** Could the change move a book that was not part of this result into it? */
+    boolean mayGain(BookUpdateRequest change) {
+      return (readingStatus != null && readingStatus.equals(status(change.getReadingStatus())))
+          || (topBook != null && topBook.equals(change.getTopBook()))
+          || (barcode != null
+              && change.getBarcodes() != null
+              && change.getBarcodes().stream()
+                  .anyMatch(c -> c != null && barcode.equals(c.trim())));
+    }
+
+    /** Could the book, as it is now, be part of this result? Its title keywords are not known. */
+    boolean mayHold(BookSearchResult b) {
+      if (readingStatus != null && !readingStatus.equals(status(b.getReadingStatus())))
+        return false;
+      if (topBook != null && topBook != Boolean.TRUE.equals(b.getTopBook())) return false;
+      if (kind == Kind.SIMILAR) return true;
+      if (barcode != null && (b.getBarcodes() == null || !b.getBarcodes().contains(barcode))) {
+        return false;
+      }
+      return contains(b.getAuthor(), author) && contains(b.getPublisher(), publisher);
+    }
+
+    /** ilike '%filter%' for plain filters; filters with wildcards are assumed to match. */
+    private static boolean contains(String value, String filter) {
+      if (filter == null) return true;
+      if (filter.indexOf('%') >= 0 || filter.indexOf('_') >= 0 || filter.indexOf('\\') >= 0) {
+        return true;
+      }
+      return value != null && value.toLowerCase(Locale.ROOT).contains(filter);
+    }
+  }
+
+  /** A search result and the catalog version it reflects at least. */
+  public record Versioned<T>(T value, CatalogVersion version) {
+    public String etag() {
+      return BookSearchCache.etag(version);
+    }
+  }
+
+  /** Weak ETag of a catalog version: equal versions mean equal results for equal filters. */
+  public static String etag(CatalogVersion catalogVersion) {
+    return "W/\"" + catalogVersion.tag() + "\"";
+  }
+
+  /**
+   * Does an {@code If-None-Match} header name this catalog version? Checked before any search runs
+   * and without touching the response, which must keep the ETag of the result it carries.
+   */
+  public static boolean notModified(String ifNoneMatch, CatalogVersion catalogVersion) {
+    if (!StringUtils.hasText(ifNoneMatch)) {
+      return false;
+    }
+    String tag = catalogVersion.tag();
+    for (ETag candidate : ETag.parse(ifNoneMatch)) {
+      if (candidate.isWildcard() || tag.equals(candidate.tag())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private record Entry(Object value, Set<String> ids, CatalogVersion version) {}
+
+  /** Changes a hit is checked against at most; beyond that it is reloaded. */
+  static final int REVALIDATE_LIMIT = 200;
+
+  private final BookDao dao;
+  private final Cache<Key, Entry> cache;
+  private final Counter invalidations;
+
+  /** Bumped after every committed write; loads that saw it change are not stored. */
+  private final AtomicLong generation = new AtomicLong();
+
+  public BookSearchCache(
+      BookDao dao,
+      MeterRegistry meterRegistry,
+      @Value("${book.search-cache.max-size:2000}") long maxSize,
+      @Value("${book.search-cache.ttl-seconds:60}") long ttlSeconds) {
+    this.dao = dao;
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "bookSearch");
+    this.invalidations =
+        Counter.builder("book.search.cache.invalidations")
+            .description("Search cache entries dropped because a write affected them")
+            .register(meterRegistry);
+  }
+
+  public Versioned<BookSearchPage> searchPage(
+      CatalogVersion current,
+      String author,
+      String publisher,
+      String titleLike,
+      String barcode,
+      String readingStatus,
+      Boolean topBook,
+      BookSearchCursor after,
+      int limit) {
+    Key key =
+        key(Kind.PAGE, author, publisher, titleLike, barcode, readingStatus, topBook, after, limit);
+    return read(
+        key,
+        current,
+        () ->
+            dao.searchPage(
+                author, publisher, titleLike, barcode, readingStatus, topBook, after, limit),
+        BookSearchPage::items);
+  }
+
+  public Versioned<List<BookSearchResult>> search(
+      CatalogVersion current,
+      String author,
+      String publisher,
+      String titleLike,
+      String barcode,
+      String readingStatus,
+      Boolean topBook,
+      int limit) {
+    Key key =
+        key(Kind.LIST, author, publisher, titleLike, barcode, readingStatus, topBook, null, limit);
+    return read(
+        key,
+        current,
+        () -> dao.search(author, publisher, titleLike, barcode, readingStatus, topBook, limit),
+        Function.identity());
+  }
+
+  public Versioned<List<BookSearchResult>> searchSimilar(
+      CatalogVersion current,
+      String author,
+      String publisher,
+      String titleLike,
+      String readingStatus,
+      Boolean topBook,
+      int limit) {
+    Key key =
+        key(Kind.SIMILAR, author, publisher, titleLike, null, readingStatus, topBook, null, limit);
+    return read(
+        key,
+        current,
+        () -> dao.searchSimilar(author, publisher, titleLike, readingStatus, topBook, limit),
+        Function.identity());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onInserted(BooksInsertedEvent event) {
+    generation.incrementAndGet();
+    drop(e -> e.getKey().affectedBy(event.books()));
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUpdated(BookUpdatedEvent event) {
+    generation.incrementAndGet();
+    drop(e -> e.getValue().ids().contains(event.id()) || e.getKey().mayGain(event.change()));
+  }
+
+  private void drop(Predicate<Map.Entry<Key, Entry>> affected) {
+    cache
+        .asMap()
+        .entrySet()
+        .removeIf(
+            e -> {
+              if (affected.test(e)) {
+                invalidations.increment();
+                return true;
+              }
+              return false;
+            });
+  }
+
+  /**
+   * {@code current} is the catalog version the caller read before calling; a miss is loaded and
+   * labelled with it.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> Versioned<T> read(
+      Key key, CatalogVersion current, Supplier<T> load, Function<T, List<BookSearchResult>> rows) {
+    Entry hit = cache.getIfPresent(key);
+    if (hit != null
+        && (hit.version().equals(current) || hit.version().settled() > current.settled())) {
+      return new Versioned<>((T) hit.value(), hit.version()); // as new as the caller's, or newer
+    }
+    long seen = generation.get();
+    if (hit != null) {
+      if (untouched(key, hit)) {
+        // a local write that commits meanwhile drops the entry, and then this replace fails
+        cache.asMap().replace(key, hit, new Entry(hit.value(), hit.ids(), current));
+        return new Versioned<>((T) hit.value(), current);
+      }
+      if (cache.asMap().remove(key, hit)) {
+        invalidations.increment();
+      }
+    }
+    T value = load.get();
+    if (generation.get() == seen) {
+      Set<String> ids = new HashSet<>();
+      for (BookSearchResult r : rows.apply(value)) {
+        ids.add(r.getId());
+      }
+      cache.put(key, new Entry(value, Set.copyOf(ids), current));
+      // a write that committed between the check and the put may have scanned past this entry
+      if (generation.get() != seen) {
+        cache.invalidate(key);
+      }
+    }
+    return new Versioned<>(value, current);
+  }
+
+  /** Can none of the books changed since the entry was loaded be part of it? */
+  private boolean untouched(Key key, Entry entry) {
+    BookChanges changes = dao.changesSince(entry.version().settled(), REVALIDATE_LIMIT);
+    if (changes.hasMore() || changes.items().size() >= REVALIDATE_LIMIT) {
+      return false;
+    }
+    for (BookSearchResult b : changes.items()) {
+      if (entry.ids().contains(b.getId()) || key.mayHold(b)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Key key(
+      Kind kind,
+      String author,
+      String publisher,
+      String titleLike,
+      String barcode,
+      String readingStatus,
+      Boolean topBook,
+      BookSearchCursor after,
+      int limit) {
+    return new Key(
+        kind,
+        text(author),
+        text(publisher),
+        text(titleLike),
+        StringUtils.hasText(barcode) ? barcode.trim() : null,
+        status(readingStatus),
+        topBook,
+        after,
+        limit);
+  }
+
+  /** Reading statuses are normalized like {@link BookDao} does before comparing them. */
+  private static String status(String s) {
+    return StringUtils.hasText(s) ? BookDao.readingStatus(s) : null;
+  }
+
+  private static String text(String s) {
+    return StringUtils.hasText(s) ? s.trim().toLowerCase(Locale.ROOT) : null;
+  }
+}
@@ -0,0 +1,43 @@
+package com.rxlog.register.web;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque keyset cursor for the admin search: the (registered_at, id) of the last row of a page.
+ * Clients only pass it back as {@code cursor=...}; the encoding may change at any time.
+ */
+public record BookSearchCursor(Instant registeredAt, UUID id) {
+
+  public static BookSearchCursor after(BookSearchResult last) {
+    return new BookSearchCursor(last.getRegisteredAt().toInstant(), UUID.fromString(last.getId()));
+  }
+
+  /** Decodes a cursor from the request; throws IllegalArgumentException if it is malformed. */
+  public static BookSearchCursor decode(String token) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      int sep = raw.indexOf('|');
+      if (sep < 0) throw new IllegalArgumentException("invalid cursor");
+      return new BookSearchCursor(
+          Instant.parse(raw.substring(0, sep)), UUID.fromString(raw.substring(sep + 1)));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("invalid cursor", e);
+    }
+  }
+
+  public String encode() {
+    String raw = registeredAt + "|" + id;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  OffsetDateTime registeredAtUtc() {
+    return registeredAt.atOffset(ZoneOffset.UTC);
+  }
+}
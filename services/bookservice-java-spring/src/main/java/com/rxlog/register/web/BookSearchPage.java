@@ -0,0 +1,6 @@
+package com.rxlog.register.web;
+
+import java.util.List;
+
+/** One page of admin search results; {@code nextCursor} is null on the last page. */
+public record BookSearchPage(List<BookSearchResult> items, String nextCursor) {}
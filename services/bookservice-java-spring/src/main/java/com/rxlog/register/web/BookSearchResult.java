@@ -1,5 +1,6 @@
 package com.rxlog.register.web;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 
 public class BookSearchResult {
@@ -15,6 +16,8 @@ public class BookSearchResult {
 
   private List<String> barcodes;
 
+  private OffsetDateTime registeredAt;
+
   public String getId() {
     return id;
   }
@@ -86,4 +89,12 @@ public class BookSearchResult {
   public void setBarcodes(List<String> barcodes) {
     this.barcodes = barcodes;
   }
+
+  public OffsetDateTime getRegisteredAt() {
+    return registeredAt;
+  }
+
+  public void setRegisteredAt(OffsetDateTime registeredAt) {
+    this.registeredAt = registeredAt;
+  }
 }
@@ -0,0 +1,93 @@
+package com.rxlog.register.web;
+
+import io.r2dbc.spi.Readable;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * R2DBC variant of {@link BookDao#search} for streaming large results: same statement, but rows are
+ * fetched from a portal {@value #FETCH_SIZE} at a time and only as fast as the subscriber requests
+ * them, so nothing beyond the in-flight batch is held in heap.
+ */
+@Repository
+public class BookStreamDao {
+
+  private static final int FETCH_SIZE = 250;
+
+  /** Converted search SQL; there is one text per filter combination (see BookDao.searchQuery). */
+  private static final Map<String, String> NUMBERED = new ConcurrentHashMap<>();
+
+  private final DatabaseClient db;
+  private final boolean projection;
+
+  public BookStreamDao(
+      DatabaseClient db, @Value("${book.search.projection:false}") boolean projection) {
+    this.db = db;
+    this.projection = projection;
+  }
+
+  public Flux<BookSearchResult> search(
+      String author,
+      String publisher,
+      String titleLike,
+      String barcode,
+      String readingStatus,
+      Boolean topBook,
+      int limit) {
+    BookDao.SearchQuery q =
+        BookDao.searchQuery(
+            projection, author, publisher, titleLike, barcode, readingStatus, topBook, null, limit);
+    DatabaseClient.GenericExecuteSpec spec =
+        db.sql(NUMBERED.computeIfAbsent(q.sql(), BookStreamDao::numbered))
+            .filter(s -> s.fetchSize(FETCH_SIZE));
+    for (int i = 0; i < q.args().size(); i++) {
+      spec = spec.bind(i, q.args().get(i));
+    }
+    return spec.map(BookStreamDao::mapRow).all();
+  }
+
+  /**
+   * JDBC {@code ?} placeholders to Postgres' {@code $1, $2, ...}; the search SQL has no literals.
+   */
+  private static String numbered(String sql) {
+    StringBuilder out = new StringBuilder(sql.length() + 16);
+    int n = 0;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (c == '?') {
+        out.append('$').append(++n);
+      } else {
+        out.append(c);
+      }
+    }
+    return out.toString();
+  }
+
+  private static BookSearchResult mapRow(Readable row) {
+    BookSearchResult r = new BookSearchResult();
+    r.setId(row.get("id", UUID.class).toString());
+    r.setAuthor(row.get("author", String.class));
+    r.setPublisher(row.get("publisher", String.class));
+    r.setPages(row.get("pages", Integer.class));
+    r.setReadingStatus(row.get("reading_status", String.class));
+    Boolean top = row.get("top_book", Boolean.class);
+    r.setTopBook(top != null ? top : Boolean.FALSE);
+    r.setWidth(row.get("width", Integer.class));
+    r.setHeight(row.get("height", Integer.class));
+    r.setRegisteredAt(row.get("registered_at", OffsetDateTime.class));
+    String[] codes = row.get("barcodes", String[].class);
+    r.setBarcodes(
+        codes == null || codes.length == 0
+            ? Collections.emptyList()
+            : Collections.unmodifiableList(Arrays.asList(codes)));
+    return r;
+  }
+}
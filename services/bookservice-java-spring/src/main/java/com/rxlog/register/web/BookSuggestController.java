@@ -0,0 +1,42 @@
+package com.rxlog.register.web;
+
+import java.util.Map;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Autocomplete for the registration form: {@code GET
+ * /api/register/suggest?field=author|publisher|keyword&prefix=...} lists the values already in the
+ * catalog that start with the prefix, the ones used by most books first. Served from {@link
+ * BookSuggestIndex}, without a database round trip.
+ */
+@RestController
+@RequestMapping("/api/register")
+public class BookSuggestController {
+
+  private final BookSuggestIndex index;
+
+  public BookSuggestController(BookSuggestIndex index) {
+    this.index = index;
+  }
+
+  @GetMapping("/suggest")
+  public ResponseEntity<?> suggest(
+      @RequestParam String field,
+      @RequestParam(required = false, defaultValue = "") String prefix,
+      @RequestParam(required = false, defaultValue = "10") int limit) {
+    BookSuggestIndex.Field f = BookSuggestIndex.Field.parse(field);
+    if (f == null) {
+      return ResponseEntity.badRequest().body(Map.of("error", "invalid_field"));
+    }
+    if (limit <= 0) {
+      limit = 10;
+    } else if (limit > 50) {
+      limit = 50;
+    }
+    return ResponseEntity.ok(index.suggest(f, prefix, limit));
+  }
+}
@@ -0,0 +1,385 @@
+package com.rxlog.register.web;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+/**
+ * Distinct authors, publishers and title keywords with the number of books using them, held in
+ * memory for {@code GET /api/register/suggest}, so autocomplete never queries Postgres per
+ * keystroke.
+ *
+ * <p>Each field is an immutable {@link Terms} snapshot: keys lower-cased and sorted, so a prefix is
+ * one binary search plus a scan of its range. Writers build a new snapshot and swap it in; readers
+ * take no lock.
+ *
+ * <p>The index is built once the application is ready and then follows book_change_log (V113) from
+ * the catalog version it was built at: right after an insert of this instance commits (on the task
+ * executor, not on the committing thread), and every {@code book.suggest.poll-ms} for inserts of
+ * other instances. {@link BookDao#partialUpdate} never changes these fields, so inserts are the
+ * only changes that matter. If the log was pruned past the last applied version, the index is
+ * rebuilt.
+ */
+@Component
+public class BookSuggestIndex {
+
+  private static final Logger log = LoggerFactory.getLogger(BookSuggestIndex.class);
+
+  private static final int CATCH_UP_BATCH = 1000;
+
+  public enum Field {
+    AUTHOR,
+    PUBLISHER,
+    KEYWORD;
+
+    /** {@code author}, {@code publisher} or {@code keyword}; null for anything else. */
+    public static Field parse(String name) {
+      if (name != null) {
+        for (Field f : values()) {
+          if (f.name().equalsIgnoreCase(name.trim())) {
+            return f;
+          }
+        }
+      }
+      return null;
+    }
+  }
+
+  public record Suggestion(String value, int books) {}
+
+  /** The distinct values of one field; immutable. */
+  static final class Terms {
+    static final Terms EMPTY = new Terms(new String[0], new String[0], new int[0]);
+
+    private final String[] keys;
+    private final String[] values;
+    private final int[] counts;
+
+    private Terms(String[] keys, String[] values, int[] counts) {
+      this.keys = keys;
+      this.values = values;
+      this.counts = counts;
+    }
+
+    /** Builds the terms from value counts; spellings that differ only in case are one term. */
+    static Terms of(Map<String, Integer> counts) {
+      return EMPTY.plus(counts);
+    }
+
+    /** A copy with the given value counts added. */
+    Terms plus(Map<String, Integer> added) {
+      Map<String, Integer> byKey = new HashMap<>();
+      Map<String, String> spelling = new HashMap<>();
+      Map<String, Integer> spellingCount = new HashMap<>();
+      for (Map.Entry<String, Integer> e : added.entrySet()) {
+        String value = e.getKey().trim();
+        if (value.isEmpty()) {
+          continue;
+        }
+        String key = value.toLowerCase(Locale.ROOT);
+        byKey.merge(key, e.getValue(), Integer::sum);
+        // the most common spelling is shown
+        if (e.getValue() > spellingCount.getOrDefault(key, 0)) {
+          spelling.put(key, value);
+          spellingCount.put(key, e.getValue());
+        }
+      }
+      if (byKey.isEmpty()) {
+        return this;
+      }
+
+      String[] newKeys = byKey.keySet().toArray(new String[0]);
+      Arrays.sort(newKeys);
+      int n = keys.length + newKeys.length;
+      String[] k = new String[n];
+      String[] v = new String[n];
+      int[] c = new int[n];
+      int i = 0;
+      int j = 0;
+      int out = 0;
+      while (i < keys.length || j < newKeys.length) {
+        int cmp = i == keys.length ? 1 : j == newKeys.length ? -1 : keys[i].compareTo(newKeys[j]);
+        if (cmp < 0) {
+          k[out] = keys[i];
+          v[out] = values[i];
+          c[out++] = counts[i++];
+        } else if (cmp > 0) {
+          String key = newKeys[j++];
+          k[out] = key;
+          v[out] = spelling.get(key);
+          c[out++] = byKey.get(key);
+        } else {
+          String key = newKeys[j++];
+          k[out] = key;
+          v[out] = values[i];
+          c[out++] = counts[i++] + byKey.get(key);
+        }
+      }
+      return new Terms(Arrays.copyOf(k, out), Arrays.copyOf(v, out), Arrays.copyOf(c, out));
+    }
+
+    /**
+     * The {@code limit} most used values starting with {@code prefix} (lower case), most books
+     * first, then alphabetically.
+     */
+    List<Suggestion> top(String prefix, int limit) {
+      int from = Arrays.binarySearch(keys, prefix);
+      if (from < 0) {
+        from = -from - 1;
+      }
+      int[] best = new int[limit];
+      int found = 0;
+      for (int i = from; i < keys.length && keys[i].startsWith(prefix); i++) {
+        if (found == limit && counts[i] <= counts[best[found - 1]]) {
+          continue; // ties keep the earlier, alphabetically smaller value
+        }
+        int at = found < limit ? found++ : found - 1;
+        while (at > 0 && counts[i] > counts[best[at - 1]]) {
+          best[at] = best[at - 1];
+          at--;
+        }
+        best[at] = i;
+      }
+      List<Suggestion> result = new ArrayList<>(found);
+      for (int r = 0; r < found; r++) {
+        result.add(new Suggestion(values[best[r]], counts[best[r]]));
+      }
+      return result;
+    }
+
+    int size() {
+      return keys.length;
+    }
+  }
+
+  private record Snapshot(Map<Field, Terms> terms, long version) {}
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate snapshotTx;
+  private final TaskExecutor executor;
+  private final ReentrantLock updating = new ReentrantLock();
+  private final AtomicBoolean pending = new AtomicBoolean();
+  private final AtomicBoolean queued = new AtomicBoolean();
+
+  private volatile Snapshot snapshot;
+
+  public BookSuggestIndex(
+      JdbcTemplate jdbc,
+      PlatformTransactionManager transactionManager,
+      @Qualifier("applicationTaskExecutor") TaskExecutor executor,
+      MeterRegistry meterRegistry) {
+    this.jdbc = jdbc;
+    this.executor = executor;
+    this.snapshotTx = new TransactionTemplate(transactionManager);
+    snapshotTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    snapshotTx.setReadOnly(true);
+    this.snapshot = new Snapshot(emptyTerms(), -1);
+    for (Field f : Field.values()) {
+      Gauge.builder("book.suggest.terms", this, index -> index.snapshot.terms().get(f).size())
+          .description("Distinct values offered by the autocomplete")
+          .tag("field", f.name().toLowerCase(Locale.ROOT))
+          .register(meterRegistry);
+    }
+  }
+
+  /**
+   * Up to {@code limit} values of {@code field} that start with {@code prefix} (case-insensitive),
+   * the ones used by most books first. Empty until the index is built.
+   */
+  public List<Suggestion> suggest(Field field, String prefix, int limit) {
+    if (!StringUtils.hasText(prefix) || limit <= 0) {
+      return List.of();
+    }
+    return snapshot.terms().get(field).top(prefix.trim().toLowerCase(Locale.ROOT), limit);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void build() {
+    catchUp();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onInserted(BooksInsertedEvent event) {
+    requestCatchUp();
+  }
+
+  /** Runs {@link #catchUp} on the task executor, so the inserting request does not wait for it. */
+  private void requestCatchUp() {
+    if (queued.compareAndSet(false, true)) {
+      try {
+        executor.execute(
+            () -> {
+              queued.set(false);
+              catchUp();
+            });
+      } catch (RuntimeException e) {
+        queued.set(false);
+        log.warn("Could not schedule suggest index catch-up: {}", e.toString());
+      }
+    }
+  }
+
+  /**
+   * Builds the index, or applies the inserts logged since the version it is at. Concurrent calls do
+   * not queue up: whoever holds the lock runs once more for every call that arrived meanwhile.
+   */
+  @Scheduled(
+      initialDelayString = "${book.suggest.poll-ms:5000}",
+      fixedDelayString = "${book.suggest.poll-ms:5000}")
+  public void catchUp() {
+    pending.set(true);
+    while (pending.get() && updating.tryLock()) {
+      try {
+        pending.set(false);
+        if (snapshot.version() < 0) {
+          snapshot = load();
+          log.info(
+              "Suggest index built at catalog version {}: {}", snapshot.version(), sizes(snapshot));
+        } else {
+          snapshot = apply(snapshot);
+        }
+      } catch (RuntimeException e) {
+        log.warn("Suggest index update failed, keeping the current terms: {}", e.toString());
+      } finally {
+        updating.unlock();
+      }
+    }
+  }
+
+  /**
+   * All books counted in one snapshot, together with the settled version of that snapshot. Books
+   * logged above it are left out; {@link #apply} counts them once they have settled.
+   */
+  private Snapshot load() {
+    return snapshotTx.execute(
+        status -> {
+          long version = jdbc.queryForObject("select public.catalog_settled()", Long.class);
+          Map<Field, Map<String, Integer>> counts = emptyCounts();
+          jdbc.query(
+              """
+                  select f.field, f.value, count(*)::int as books
+                  from books b
+                  cross join lateral (values
+                    ('AUTHOR', b.author),
+                    ('PUBLISHER', b.publisher),
+                    ('KEYWORD', b.title_keyword),
+                    ('KEYWORD', b.title_keyword2),
+                    ('KEYWORD', b.title_keyword3)
+                  ) as f(field, value)
+                  where f.value is not null
+                    and b.id not in (
+                      select c.book_id from book_change_log c where c.kind = ? and c.version > ?
+                    )
+                  group by f.field, f.value
+                  """,
+              rs -> {
+                counts
+                    .get(Field.valueOf(rs.getString("field")))
+                    .merge(rs.getString("value"), rs.getInt("books"), Integer::sum);
+              },
+              BookChangeEvent.BOOK_INSERTED,
+              version);
+          Map<Field, Terms> terms = new EnumMap<>(Field.class);
+          counts.forEach((f, c) -> terms.put(f, Terms.of(c)));
+          return new Snapshot(terms, version);
+        });
+  }
+
+  private Snapshot apply(Snapshot current) {
+    Long pruned = jdbc.queryForObject("select version from book_change_log_pruned", Long.class);
+    if (pruned != null && pruned > current.version()) {
+      log.info(
+          "Change log pruned past version {}, rebuilding the suggest index", current.version());
+      return load();
+    }
+    long version = current.version();
+    Map<Field, Map<String, Integer>> added = emptyCounts();
+    int read;
+    do {
+      long after = version;
+      List<Long> versions = new ArrayList<>();
+      jdbc.query(
+          """
+              select c.version, b.author, b.publisher,
+                     b.title_keyword, b.title_keyword2, b.title_keyword3
+              from book_change_log c
+              left join books b on b.id = c.book_id and c.kind = ?
+              where c.version > ? and c.version <= public.catalog_settled()
+              order by c.version
+              limit ?
+              """,
+          rs -> {
+            versions.add(rs.getLong("version"));
+            count(added, Field.AUTHOR, rs.getString("author"));
+            count(added, Field.PUBLISHER, rs.getString("publisher"));
+            count(added, Field.KEYWORD, rs.getString("title_keyword"));
+            count(added, Field.KEYWORD, rs.getString("title_keyword2"));
+            count(added, Field.KEYWORD, rs.getString("title_keyword3"));
+          },
+          BookChangeEvent.BOOK_INSERTED,
+          after,
+          CATCH_UP_BATCH);
+      read = versions.size();
+      if (read > 0) {
+        version = versions.get(read - 1);
+      }
+    } while (read == CATCH_UP_BATCH);
+
+    if (version == current.version()) {
+      return current;
+    }
+    Map<Field, Terms> terms = new EnumMap<>(current.terms());
+    added.forEach((f, c) -> terms.put(f, terms.get(f).plus(c)));
+    return new Snapshot(terms, version);
+  }
+
+  private static void count(Map<Field, Map<String, Integer>> counts, Field field, String value) {
+    if (value != null) {
+      counts.get(field).merge(value, 1, Integer::sum);
+    }
+  }
+
+  private static Map<Field, Map<String, Integer>> emptyCounts() {
+    Map<Field, Map<String, Integer>> counts = new EnumMap<>(Field.class);
+    for (Field f : Field.values()) {
+      counts.put(f, new HashMap<>());
+    }
+    return counts;
+  }
+
+  private static Map<Field, Terms> emptyTerms() {
+    Map<Field, Terms> terms = new EnumMap<>(Field.class);
+    for (Field f : Field.values()) {
+      terms.put(f, Terms.EMPTY);
+    }
+    return terms;
+  }
+
+  private static Map<Field, Integer> sizes(Snapshot s) {
+    Map<Field, Integer> sizes = new EnumMap<>(Field.class);
+    s.terms().forEach((f, t) -> sizes.put(f, t.size()));
+    return sizes;
+  }
+}
@@ -0,0 +1,4 @@
+package com.rxlog.register.web;
+
+/** Published by {@link BookDao#partialUpdate} when a book was changed. */
+public record BookUpdatedEvent(String id, BookUpdateRequest change) {}
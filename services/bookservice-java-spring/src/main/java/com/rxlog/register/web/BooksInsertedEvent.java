@@ -0,0 +1,7 @@
+package com.rxlog.register.web;
+
+import com.rxlog.register.api.RegisterBookRequest;
+import java.util.List;
+
+/** Published by {@link BookDao} for every committed insert; {@code ids} and {@code books} align. */
+public record BooksInsertedEvent(List<String> ids, List<RegisterBookRequest> books) {}
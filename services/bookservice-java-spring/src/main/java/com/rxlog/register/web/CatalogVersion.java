@@ -0,0 +1,17 @@
+package com.rxlog.register.web;
+
+/**
+ * State of the catalog as seen by one read (V112). {@code settled} is the version below which
+ * nothing can change any more and is what {@code since} and change feed offsets resume from; books
+ * stamped above it (in-flight or just committed) are summed up by their number and a digest of
+ * their versions, so any write that becomes visible changes the version.
+ */
+public record CatalogVersion(long settled, int pending, long digest) {
+
+  /** ETag value: the settled version alone while nothing is pending above it. */
+  public String tag() {
+    return pending == 0
+        ? "catalog-" + settled
+        : "catalog-" + settled + "-" + pending + "-" + Long.toHexString(digest);
+  }
+}
@@ -1,8 +1,13 @@
 package com.rxlog.register.web;
 
 import java.util.List;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 /** HTTP controller for searching and updating books. */
 @RestController
@@ -10,20 +15,34 @@ import org.springframework.web.bind.annotation.*;
 public class WebRegisterController {
 
   private final BookDao bookDao;
+  private final BookSearchCache searchCache;
+  private final BookStreamDao bookStreamDao;
 
-  public WebRegisterController(BookDao bookDao) {
+  public WebRegisterController(
+      BookDao bookDao, BookSearchCache searchCache, BookStreamDao bookStreamDao) {
     this.bookDao = bookDao;
+    this.searchCache = searchCache;
+    this.bookStreamDao = bookStreamDao;
   }
 
+  /** Filtered search; ETag and 304 handling as for {@code GET /api/register/books}. */
   @GetMapping("/search")
-  public List<BookSearchResult> search(
+  public ResponseEntity<List<BookSearchResult>> search(
       @RequestParam(value = "author", required = false) String author,
       @RequestParam(value = "publisher", required = false) String publisher,
       @RequestParam(value = "titleLike", required = false) String titleLike,
       @RequestParam(value = "barcode", required = false) String barcode,
       @RequestParam(value = "readingStatus", required = false) String readingStatus,
       @RequestParam(value = "topBook", required = false) Boolean topBook,
-      @RequestParam(value = "limit", required = false, defaultValue = "100") int limit) {
+      @RequestParam(value = "limit", required = false, defaultValue = "100") int limit,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+    CatalogVersion checked = StringUtils.hasText(ifNoneMatch) ? bookDao.catalogVersion() : null;
+    if (checked != null && BookSearchCache.notModified(ifNoneMatch, checked)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+          .eTag(BookSearchCache.etag(checked))
+          .build();
+    }
 
     if (limit <= 0) {
       limit = 100;
@@ -31,7 +50,35 @@ public class WebRegisterController {
       limit = 1000;
     }
 
-    return bookDao.search(author, publisher, titleLike, barcode, readingStatus, topBook, limit);
+    CatalogVersion version = checked != null ? checked : bookDao.catalogVersion();
+    BookSearchCache.Versioned<List<BookSearchResult>> result =
+        searchCache.search(
+            version, author, publisher, titleLike, barcode, readingStatus, topBook, limit);
+    return ResponseEntity.ok().eTag(result.etag()).body(result.value());
+  }
+
+  /**
+   * Same filters as {@link #search}, streamed as one JSON object per line while rows are read. The
+   * response is written with backpressure, so large results never sit in heap as a list.
+   */
+  @GetMapping(value = "/search/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<BookSearchResult> searchStream(
+      @RequestParam(value = "author", required = false) String author,
+      @RequestParam(value = "publisher", required = false) String publisher,
+      @RequestParam(value = "titleLike", required = false) String titleLike,
+      @RequestParam(value = "barcode", required = false) String barcode,
+      @RequestParam(value = "readingStatus", required = false) String readingStatus,
+      @RequestParam(value = "topBook", required = false) Boolean topBook,
+      @RequestParam(value = "limit", required = false, defaultValue = "1000") int limit) {
+
+    if (limit <= 0) {
+      limit = 1000;
+    } else if (limit > 100_000) {
+      limit = 100_000;
+    }
+
+    return bookStreamDao.search(
+        author, publisher, titleLike, barcode, readingStatus, topBook, limit);
   }
 
   @PatchMapping("/{id}")
@@ -0,0 +1,15 @@
+-- V106: keyset pagination on (registered_at, id) for BookDao.search
+
+UPDATE public.books
+SET registered_at = COALESCE(reading_status_updated_at, now())
+WHERE registered_at IS NULL;
+
+ALTER TABLE public.books
+  ALTER COLUMN registered_at SET DEFAULT now(),
+  ALTER COLUMN registered_at SET NOT NULL;
+
+-- Match "order by registered_at desc nulls last, id desc" exactly, so both the
+-- top-N scan and the (registered_at, id) < (?, ?) seek are served by the index.
+DROP INDEX IF EXISTS public.books_registered_at_idx;
+DROP INDEX IF EXISTS public.idx_books_registered_at;
+CREATE INDEX books_registered_at_idx ON public.books (registered_at DESC NULLS LAST, id DESC);
@@ -0,0 +1,12 @@
+-- V107: trigram indexes for the ilike / similarity filters in BookDao.search.
+-- idx_books_title_trgm went away together with books.title in V103.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+DROP INDEX IF EXISTS public.idx_books_title_trgm;
+
+CREATE INDEX IF NOT EXISTS books_author_trgm_idx         ON public.books USING GIN (author gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS books_publisher_trgm_idx      ON public.books USING GIN (publisher gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS books_title_keyword_trgm_idx  ON public.books USING GIN (title_keyword gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS books_title_keyword2_trgm_idx ON public.books USING GIN (title_keyword2 gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS books_title_keyword3_trgm_idx ON public.books USING GIN (title_keyword3 gin_trgm_ops);
@@ -0,0 +1,5 @@
+-- V109: the assign/release endpoints work on barcodes.is_available; make sure
+-- the column exists on databases that were only created from V1.
+
+ALTER TABLE public.barcodes
+  ADD COLUMN IF NOT EXISTS is_available boolean NOT NULL DEFAULT true;
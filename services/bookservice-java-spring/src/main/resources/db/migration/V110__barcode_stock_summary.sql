@@ -0,0 +1,114 @@
+-- V110: per-prefix barcode stock, maintained by triggers on public.barcodes.
+-- Codes are <prefix><3-digit ranking suffix>; the size group and edge of a
+-- prefix come from config/sizerules.csv and are joined in by the service.
+-- Triggers rather than application hooks: the pool, /release, the startup
+-- reconcile and manual fixes all write is_available directly.
+--
+-- The counters live in barcode_stock_counts, 16 slots per prefix, so there is
+-- no hot row: a session always writes the slot of its backend pid, and
+-- concurrent claims of the same size group touch different rows instead of
+-- queueing on one until the previous claimer commits. One statement-level
+-- trigger per operation applies the net change of the whole statement from its
+-- transition tables. barcode_stock_summary is a view that sums the slots.
+
+CREATE OR REPLACE FUNCTION public.barcode_prefix(code text) RETURNS text
+  LANGUAGE sql IMMUTABLE STRICT
+  AS $$ SELECT substring(code from '^(.+)[0-9]{3}$') $$;
+
+CREATE TABLE IF NOT EXISTS public.barcode_stock_counts (
+  prefix     text        NOT NULL,
+  slot       smallint    NOT NULL,
+  available  integer     NOT NULL DEFAULT 0,
+  total      integer     NOT NULL DEFAULT 0,
+  updated_at timestamptz NOT NULL DEFAULT now(),
+  PRIMARY KEY (prefix, slot)
+);
+
+CREATE OR REPLACE FUNCTION public.barcode_stock_apply(prefixes text[], d_available integer[], d_total integer[])
+  RETURNS void LANGUAGE sql
+  AS $$
+    INSERT INTO public.barcode_stock_counts AS s (prefix, slot, available, total)
+    SELECT d.prefix, pg_backend_pid() % 16, d.available, d.total
+    FROM unnest(prefixes, d_available, d_total) AS d(prefix, available, total)
+    WHERE d.prefix IS NOT NULL AND (d.available <> 0 OR d.total <> 0)
+    ORDER BY d.prefix -- same lock order in every session
+    ON CONFLICT (prefix, slot) DO UPDATE
+      SET available  = s.available + excluded.available,
+          total      = s.total + excluded.total,
+          updated_at = now()
+  $$;
+
+CREATE OR REPLACE FUNCTION public.barcode_stock_track_statement() RETURNS trigger
+  LANGUAGE plpgsql
+  AS $$
+  BEGIN
+    IF TG_OP = 'INSERT' THEN
+      PERFORM public.barcode_stock_apply(array_agg(prefix), array_agg(available), array_agg(total))
+      FROM (
+        SELECT public.barcode_prefix(code) AS prefix,
+               (count(*) FILTER (WHERE is_available))::integer AS available,
+               count(*)::integer AS total
+        FROM new_rows
+        GROUP BY 1
+      ) d;
+    ELSIF TG_OP = 'DELETE' THEN
+      PERFORM public.barcode_stock_apply(array_agg(prefix), array_agg(available), array_agg(total))
+      FROM (
+        SELECT public.barcode_prefix(code) AS prefix,
+               -(count(*) FILTER (WHERE is_available))::integer AS available,
+               -count(*)::integer AS total
+        FROM old_rows
+        GROUP BY 1
+      ) d;
+    ELSE
+      PERFORM public.barcode_stock_apply(array_agg(prefix), array_agg(available), array_agg(total))
+      FROM (
+        SELECT prefix, sum(available)::integer AS available, sum(total)::integer AS total
+        FROM (
+          SELECT public.barcode_prefix(code) AS prefix, is_available::integer AS available, 1 AS total
+          FROM new_rows
+          UNION ALL
+          SELECT public.barcode_prefix(code), -is_available::integer, -1
+          FROM old_rows
+        ) c
+        GROUP BY prefix
+      ) d;
+    END IF;
+    RETURN NULL;
+  END
+  $$;
+
+-- no claims or releases between the backfill and the triggers
+LOCK TABLE public.barcodes IN SHARE ROW EXCLUSIVE MODE;
+
+DELETE FROM public.barcode_stock_counts;
+INSERT INTO public.barcode_stock_counts (prefix, slot, available, total)
+SELECT public.barcode_prefix(code), 0, count(*) FILTER (WHERE is_available), count(*)
+FROM public.barcodes
+WHERE public.barcode_prefix(code) IS NOT NULL
+GROUP BY 1;
+
+CREATE OR REPLACE VIEW public.barcode_stock_summary AS
+SELECT prefix,
+       sum(available)::integer AS available,
+       sum(total)::integer     AS total,
+       max(updated_at)         AS updated_at
+FROM public.barcode_stock_counts
+GROUP BY prefix;
+
+-- transition tables rule out "UPDATE OF <columns>"; updates that do not move
+-- is_available or code net out to zero and write nothing
+CREATE TRIGGER barcodes_stock_insert
+  AFTER INSERT ON public.barcodes
+  REFERENCING NEW TABLE AS new_rows
+  FOR EACH STATEMENT EXECUTE FUNCTION public.barcode_stock_track_statement();
+
+CREATE TRIGGER barcodes_stock_delete
+  AFTER DELETE ON public.barcodes
+  REFERENCING OLD TABLE AS old_rows
+  FOR EACH STATEMENT EXECUTE FUNCTION public.barcode_stock_track_statement();
+
+CREATE TRIGGER barcodes_stock_update
+  AFTER UPDATE ON public.barcodes
+  REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+  FOR EACH STATEMENT EXECUTE FUNCTION public.barcode_stock_track_statement();
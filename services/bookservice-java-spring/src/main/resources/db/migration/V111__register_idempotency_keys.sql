@@ -0,0 +1,15 @@
+-- V111: Idempotency-Key store for POST /api/register/book.
+-- The key row is inserted in the same transaction as the book, so a retry
+-- either finds the committed response or waits on the in-flight insert.
+
+CREATE TABLE IF NOT EXISTS public.register_idempotency_keys (
+  idempotency_key text        PRIMARY KEY,
+  fingerprint     text        NOT NULL,
+  book_id         uuid,
+  barcode         text,
+  reading_status  text,
+  created_at      timestamptz NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS register_idempotency_keys_created_at_idx
+  ON public.register_idempotency_keys (created_at);
@@ -0,0 +1,75 @@
+-- V112: catalog version for ETags and delta sync.
+-- Every write to books, and every barcode change of a book, stamps it with a
+-- version derived from the writing transaction:
+--
+--   (xid << 20) + n
+--
+-- where n counts the stamps of that transaction (1 .. 2^20 - 1). Versions of
+-- one transaction are increasing, and all of them sort after those of every
+-- transaction with a smaller xid. Nothing is locked and nothing is updated, so
+-- concurrent writers never queue on a shared counter row.
+--
+-- Versions do not become visible in commit order: a transaction with a
+-- smaller xid can commit after one with a larger xid. catalog_settled() is the
+-- point below which nothing can change any more. Every transaction with an xid
+-- under the xmin of the reader's snapshot has finished, and every later one
+-- stamps above it. Readers that resume from an offset (change feed, delta sync,
+-- suggest index) only move up to catalog_settled(). One long-running writing
+-- transaction anywhere in the cluster holds the settled point back and so
+-- delays those readers until it ends; it does not block any writer.
+
+ALTER TABLE public.books ADD COLUMN IF NOT EXISTS change_version bigint NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS books_change_version_idx ON public.books (change_version);
+
+CREATE OR REPLACE FUNCTION public.catalog_bump() RETURNS bigint
+  LANGUAGE plpgsql
+  AS $$
+  DECLARE
+    n integer := coalesce(nullif(current_setting('rxlog.catalog_stamps', true), ''), '0')::integer + 1;
+  BEGIN
+    IF n >= 1048576 THEN
+      RAISE EXCEPTION 'more than 1048575 catalog changes in one transaction';
+    END IF;
+    PERFORM set_config('rxlog.catalog_stamps', n::text, true);
+    RETURN (pg_current_xact_id()::text::bigint << 20) + n;
+  END
+  $$;
+
+-- Highest version that can no longer change: anything at or below it has
+-- either committed (and is visible to the caller's snapshot) or never will.
+CREATE OR REPLACE FUNCTION public.catalog_settled() RETURNS bigint
+  LANGUAGE sql STABLE
+  AS $$ SELECT pg_snapshot_xmin(pg_current_snapshot())::text::bigint << 20 $$;
+
+CREATE OR REPLACE FUNCTION public.books_stamp_version() RETURNS trigger
+  LANGUAGE plpgsql
+  AS $$
+  BEGIN
+    NEW.change_version := public.catalog_bump();
+    RETURN NEW;
+  END
+  $$;
+
+DROP TRIGGER IF EXISTS books_stamp_version ON public.books;
+CREATE TRIGGER books_stamp_version
+  BEFORE INSERT OR UPDATE ON public.books
+  FOR EACH ROW EXECUTE FUNCTION public.books_stamp_version();
+
+-- A barcode change re-stamps its book, unless the book was already written
+-- (and so stamped) earlier in the same transaction.
+CREATE OR REPLACE FUNCTION public.book_barcodes_touch_book() RETURNS trigger
+  LANGUAGE plpgsql
+  AS $$
+  BEGIN
+    UPDATE public.books SET change_version = 0
+    WHERE id = COALESCE(NEW.book_id, OLD.book_id)
+      AND xmin <> pg_current_xact_id()::xid;
+    RETURN NULL;
+  END
+  $$;
+
+DROP TRIGGER IF EXISTS book_barcodes_touch_book ON public.book_barcodes;
+CREATE TRIGGER book_barcodes_touch_book
+  AFTER INSERT OR UPDATE OR DELETE ON public.book_barcodes
+  FOR EACH ROW EXECUTE FUNCTION public.book_barcodes_touch_book();
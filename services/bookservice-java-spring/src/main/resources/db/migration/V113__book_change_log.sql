@@ -0,0 +1,24 @@
+-- V113: change log of book writes for downstream consumers.
+-- BookDao appends one row per inserted or updated book and per barcode
+-- release, in the transaction of the write. The version comes from
+-- catalog_bump() (V112); a consumer that reads up to catalog_settled() and
+-- resumes after that offset never misses a later commit.
+
+CREATE TABLE IF NOT EXISTS public.book_change_log (
+  version    bigint      PRIMARY KEY,
+  kind       text        NOT NULL,
+  book_id    uuid        NOT NULL,
+  barcodes   text[],
+  created_at timestamptz NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS book_change_log_created_at_idx
+  ON public.book_change_log (created_at);
+
+-- Highest version removed by retention; older offsets cannot be resumed.
+CREATE TABLE IF NOT EXISTS public.book_change_log_pruned (
+  id      boolean PRIMARY KEY DEFAULT true CHECK (id),
+  version bigint  NOT NULL
+);
+
+INSERT INTO public.book_change_log_pruned (id, version) VALUES (true, 0) ON CONFLICT DO NOTHING;
@@ -0,0 +1,129 @@
+-- V114: book_search_view, one row per book with everything the admin list
+-- shows or filters on, maintained by triggers on books and book_barcodes.
+-- BookDao.search reads it when book.search.projection is on: list pages walk
+-- book_search_view_list_idx, check status and top book on the index and
+-- fetch only the rows they return, without the per-row barcode lookup of the
+-- books query.
+
+CREATE TABLE IF NOT EXISTS public.book_search_view (
+  id               uuid        PRIMARY KEY REFERENCES public.books (id) ON DELETE CASCADE,
+  registered_at    timestamptz NOT NULL,
+  author           text,
+  publisher        text,
+  pages            integer,
+  reading_status   text,
+  top_book         boolean,
+  width            integer,
+  height           integer,
+  barcodes         text[]      NOT NULL DEFAULT '{}',
+  -- lower-cased for "like lower(?)"; title keywords joined with a unit
+  -- separator, so a pattern never matches across two keywords
+  search_author    text,
+  search_publisher text,
+  search_title     text
+);
+
+-- Writes go to every row sooner or later: vacuum early so dead versions do
+-- not pile up in the list index.
+ALTER TABLE public.book_search_view SET (
+  autovacuum_vacuum_scale_factor = 0.02,
+  autovacuum_vacuum_insert_scale_factor = 0.02
+);
+
+-- Same order as books_registered_at_idx (V106), carrying the short listed
+-- columns. Author, publisher and barcodes are unbounded: included, one long
+-- value would push an entry past the btree limit (about 2.7 kB) and fail the
+-- write. They are read from the heap, for the returned rows only.
+CREATE INDEX IF NOT EXISTS book_search_view_list_idx
+  ON public.book_search_view (registered_at DESC NULLS LAST, id DESC)
+  INCLUDE (pages, reading_status, top_book, width, height);
+
+-- The barcode filter goes through idx_book_barcodes_barcode: there are no
+-- element statistics on unique codes, so "barcodes @> ..." would be estimated
+-- as far too common and answered by walking the list index.
+CREATE INDEX IF NOT EXISTS book_search_view_author_trgm_idx
+  ON public.book_search_view USING GIN (search_author gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS book_search_view_publisher_trgm_idx
+  ON public.book_search_view USING GIN (search_publisher gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS book_search_view_title_trgm_idx
+  ON public.book_search_view USING GIN (search_title gin_trgm_ops);
+
+CREATE OR REPLACE FUNCTION public.book_search_view_refresh(book uuid) RETURNS void
+  LANGUAGE sql
+  AS $$
+  INSERT INTO public.book_search_view AS v (
+    id, registered_at, author, publisher, pages, reading_status, top_book, width, height,
+    barcodes, search_author, search_publisher, search_title
+  )
+  SELECT b.id, b.registered_at, b.author, b.publisher, b.pages, b.reading_status, b.top_book,
+         b.width, b.height,
+         array(SELECT bb.barcode FROM public.book_barcodes bb
+               WHERE bb.book_id = b.id ORDER BY bb.barcode),
+         lower(b.author), lower(b.publisher),
+         lower(concat_ws(E'\x1f', b.title_keyword, b.title_keyword2, b.title_keyword3))
+  FROM public.books b
+  WHERE b.id = book
+  ON CONFLICT (id) DO UPDATE SET
+    registered_at    = EXCLUDED.registered_at,
+    author           = EXCLUDED.author,
+    publisher        = EXCLUDED.publisher,
+    pages            = EXCLUDED.pages,
+    reading_status   = EXCLUDED.reading_status,
+    top_book         = EXCLUDED.top_book,
+    width            = EXCLUDED.width,
+    height           = EXCLUDED.height,
+    barcodes         = EXCLUDED.barcodes,
+    search_author    = EXCLUDED.search_author,
+    search_publisher = EXCLUDED.search_publisher,
+    search_title     = EXCLUDED.search_title
+  $$;
+
+CREATE OR REPLACE FUNCTION public.books_refresh_search_view() RETURNS trigger
+  LANGUAGE plpgsql
+  AS $$
+  BEGIN
+    PERFORM public.book_search_view_refresh(NEW.id);
+    RETURN NULL;
+  END
+  $$;
+
+DROP TRIGGER IF EXISTS books_refresh_search_view ON public.books;
+CREATE TRIGGER books_refresh_search_view
+  AFTER INSERT OR UPDATE ON public.books
+  FOR EACH ROW EXECUTE FUNCTION public.books_refresh_search_view();
+
+CREATE OR REPLACE FUNCTION public.book_barcodes_refresh_search_view() RETURNS trigger
+  LANGUAGE plpgsql
+  AS $$
+  BEGIN
+    PERFORM public.book_search_view_refresh(COALESCE(NEW.book_id, OLD.book_id));
+    RETURN NULL;
+  END
+  $$;
+
+DROP TRIGGER IF EXISTS book_barcodes_refresh_search_view ON public.book_barcodes;
+CREATE TRIGGER book_barcodes_refresh_search_view
+  AFTER INSERT OR UPDATE OR DELETE ON public.book_barcodes
+  FOR EACH ROW EXECUTE FUNCTION public.book_barcodes_refresh_search_view();
+
+-- Backfill; books written meanwhile wait, so none is missed.
+LOCK TABLE public.books, public.book_barcodes IN SHARE MODE;
+
+INSERT INTO public.book_search_view (
+  id, registered_at, author, publisher, pages, reading_status, top_book, width, height,
+  barcodes, search_author, search_publisher, search_title
+)
+SELECT b.id, b.registered_at, b.author, b.publisher, b.pages, b.reading_status, b.top_book,
+       b.width, b.height,
+       coalesce(bc.barcodes, '{}'),
+       lower(b.author), lower(b.publisher),
+       lower(concat_ws(E'\x1f', b.title_keyword, b.title_keyword2, b.title_keyword3))
+FROM public.books b
+LEFT JOIN (
+  SELECT book_id, array_agg(barcode ORDER BY barcode) AS barcodes
+  FROM public.book_barcodes
+  GROUP BY book_id
+) bc ON bc.book_id = b.id
+ON CONFLICT (id) DO NOTHING;
+
+ANALYZE public.book_search_view;
@@ -0,0 +1,43 @@
+-- V115: full-text search for BookDao.fullText (GET /api/register/books?q=).
+-- Title keywords are indexed with the german dictionary (stems, stop words)
+-- and with simple (exact words); author and publisher only with simple, so
+-- names are never stemmed. Weights: a keyword at title position 1 is A, at
+-- position 2 B, anything later C; author B, publisher D.
+
+CREATE OR REPLACE FUNCTION public.book_keyword_weight(pos integer) RETURNS "char"
+  LANGUAGE sql IMMUTABLE PARALLEL SAFE
+  AS $$ SELECT CASE WHEN pos = 1 THEN 'A' WHEN pos = 2 THEN 'B' ELSE 'C' END::"char" $$;
+
+CREATE OR REPLACE FUNCTION public.book_search_vector(
+    author text, publisher text,
+    kw1 text, pos1 integer, kw2 text, pos2 integer, kw3 text, pos3 integer
+  ) RETURNS tsvector
+  LANGUAGE sql IMMUTABLE PARALLEL SAFE
+  AS $$
+  SELECT setweight(to_tsvector('simple'::regconfig, coalesce(author, '')), 'B')
+      || setweight(to_tsvector('simple'::regconfig, coalesce(publisher, '')), 'D')
+      || setweight(to_tsvector('german'::regconfig, coalesce(kw1, ''))
+                   || to_tsvector('simple'::regconfig, coalesce(kw1, '')),
+                   public.book_keyword_weight(pos1))
+      || setweight(to_tsvector('german'::regconfig, coalesce(kw2, ''))
+                   || to_tsvector('simple'::regconfig, coalesce(kw2, '')),
+                   public.book_keyword_weight(pos2))
+      || setweight(to_tsvector('german'::regconfig, coalesce(kw3, ''))
+                   || to_tsvector('simple'::regconfig, coalesce(kw3, '')),
+                   public.book_keyword_weight(pos3))
+  $$;
+
+-- Rewrites books once; afterwards the column follows every insert and update.
+ALTER TABLE public.books
+  ADD COLUMN IF NOT EXISTS search_vector tsvector
+  GENERATED ALWAYS AS (public.book_search_vector(
+    author, publisher,
+    title_keyword, title_keyword_position,
+    title_keyword2, title_keyword2_position,
+    title_keyword3, title_keyword3_position)) STORED;
+
+CREATE INDEX IF NOT EXISTS books_search_vector_idx ON public.books USING GIN (search_vector);
+
+-- fullText picks between this index and books_registered_at_idx on the estimated match count,
+-- which needs statistics for the new column
+ANALYZE public.books;
@@ -0,0 +1,115 @@
+package com.rxlog.register.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/** Integration tests for claiming several codes at once from BarcodePool. */
+@SpringBootTest
+@Transactional
+class BarcodePoolIntegrationTest {
+
+  @Autowired JdbcTemplate jdbc;
+
+  @Autowired BarcodePool barcodePool;
+
+  @Autowired SizeRuleEngine sizeRules;
+
+  @Test
+  void claimMany_fromTheTable_takesTheBestAvailableInRankingOrder() {
+    SizeRules.Placement placement = placement("zzb", List.of("zzb001", "zzb010", "zzb100"));
+    jdbc.update(
+        "insert into public.barcodes (code, is_available) select unnest(?::text[]), true",
+        (Object) new String[] {"zzb100", "zzb001", "zzb010"});
+    jdbc.update("update public.barcodes set is_available = false where code = 'zzb010'");
+
+    assertEquals(List.of("zzb001", "zzb100"), barcodePool.claim(placement, 5));
+    assertEquals(List.of(), barcodePool.claim(placement, 1));
+  }
+
+  @Test
+  void claimMany_fromAShard_matchesClaimingOneByOne() {
+    SizeRules.Placement placement =
+        sizeRules.resolve(new BigDecimal("10.0"), new BigDecimal("18.0"));
+    jdbc.update(
+        """
+            insert into public.barcodes (code, is_available) select unnest(?::text[]), true
+            on conflict (code) do update set is_available = true
+            """,
+        (Object) placement.candidates().subList(0, 3).toArray(new String[0]));
+    barcodePool.refresh();
+    List<String> expected =
+        jdbc.queryForList(
+            """
+                select b.code
+                from unnest(?::text[]) with ordinality as c(code, rank)
+                join public.barcodes b on b.code = c.code
+                where b.is_available
+                order by c.rank
+                limit 3
+                """,
+            String.class,
+            (Object) placement.candidates().toArray(new String[0]));
+
+    List<String> claimed = barcodePool.claim(placement, 3);
+
+    assertEquals(placement.candidates().subList(0, 3), expected);
+    assertEquals(expected, claimed);
+    assertEquals(
+        0,
+        jdbc.queryForObject(
+            "select count(*) from public.barcodes where code = any(?::text[]) and is_available",
+            Integer.class,
+            (Object) claimed.toArray(new String[0])));
+  }
+
+  @Test
+  void reconcile_takesAttachedCodesAndFreesOnlyStaleUnattachedOnes() {
+    String bookId =
+        jdbc.queryForObject(
+            """
+                insert into books (author, publisher, pages, width, height, reading_status)
+                values ('Test Author', 'Test Publisher', 100, 100, 200, 'in_progress')
+                returning id::text
+                """,
+            String.class);
+    jdbc.update(
+        """
+            insert into public.barcodes (code, is_available, updated_at) values
+              ('zzc001', true, now()),
+              ('zzc002', false, now() - interval '2 days'),
+              ('zzc003', false, now())
+            """);
+    jdbc.update("insert into book_barcodes (book_id, barcode) values (?::uuid, 'zzc001')", bookId);
+
+    barcodePool.reconcile();
+
+    assertEquals(
+        List.of("zzc002"),
+        jdbc.queryForList(
+            "select code from public.barcodes where code like 'zzc%' and is_available",
+            String.class));
+  }
+
+  private static SizeRules.Placement placement(String prefix, List<String> candidates) {
+    SizeRules.Rule rule =
+        new SizeRules.Rule(
+            99,
+            BigDecimal.ZERO,
+            BigDecimal.ONE,
+            "test",
+            BigDecimal.ONE,
+            prefix,
+            prefix,
+            "",
+            Set.of());
+    return new SizeRules.Placement(rule, prefix, "up", candidates);
+  }
+}
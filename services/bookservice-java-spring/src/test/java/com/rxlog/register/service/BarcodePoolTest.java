@@ -0,0 +1,77 @@
+package com.rxlog.register.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for the lock-free shard cursor of BarcodePool. */
+class BarcodePoolTest {
+
+  @Test
+  void shardHandsOutCodesInOrderThenNull() {
+    BarcodePool.Shard shard = new BarcodePool.Shard(new String[] {"ogk001", "ogk010"});
+    assertEquals(2, shard.remaining());
+    assertEquals("ogk001", shard.next());
+    assertEquals("ogk010", shard.next());
+    assertNull(shard.next());
+    assertEquals(0, shard.remaining());
+  }
+
+  @Test
+  void shardHandsOutRunsOfCodesUntilUsedUp() {
+    BarcodePool.Shard shard = new BarcodePool.Shard(new String[] {"a", "b", "c"});
+    assertEquals(List.of("a", "b"), shard.next(2));
+    assertEquals(List.of("c"), shard.next(2));
+    assertEquals(List.of(), shard.next(2));
+    assertNull(shard.next());
+  }
+
+  @Test
+  void concurrentClaimsNeverReturnTheSameCode() throws Exception {
+    int size = 20_000;
+    String[] codes = new String[size];
+    for (int i = 0; i < size; i++) {
+      codes[i] = "c" + i;
+    }
+    BarcodePool.Shard shard = new BarcodePool.Shard(codes);
+
+    int threads = 8;
+    Set<String> seen = ConcurrentHashMap.newKeySet();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        results.add(
+            pool.submit(
+                () -> {
+                  start.await();
+                  int n = 0;
+                  String code;
+                  while ((code = shard.next()) != null) {
+                    assertTrue(seen.add(code), "handed out twice: " + code);
+                    n++;
+                  }
+                  return n;
+                }));
+      }
+      start.countDown();
+      int total = 0;
+      for (Future<Integer> f : results) {
+        total += f.get();
+      }
+      assertEquals(size, total);
+      assertEquals(size, seen.size());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
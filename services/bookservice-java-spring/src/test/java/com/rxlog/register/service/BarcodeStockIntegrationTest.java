@@ -0,0 +1,55 @@
+package com.rxlog.register.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/** Integration tests for the trigger-maintained barcode_stock_summary. */
+@SpringBootTest
+@Transactional
+class BarcodeStockIntegrationTest {
+
+  @Autowired JdbcTemplate jdbc;
+
+  @Autowired BarcodeStock barcodeStock;
+
+  @Test
+  void claimsReleasesAndDeletes_adjustTheSummary() {
+    jdbc.update(
+        "insert into public.barcodes (code, is_available) select unnest(?::text[]), true",
+        (Object) new String[] {"zzt001", "zzt010", "zzt100"});
+    assertEquals(3, barcodeStock.available("zzt"));
+
+    jdbc.update(
+        "update public.barcodes set is_available = false where code in ('zzt001', 'zzt010')");
+    assertEquals(1, barcodeStock.available("zzt"));
+
+    jdbc.update("update public.barcodes set is_available = true where code = 'zzt001'");
+    jdbc.update("delete from public.barcodes where code = 'zzt100'");
+    assertEquals(1, barcodeStock.available("zzt"));
+    assertEquals(
+        List.of(2),
+        jdbc.queryForList(
+            "select total from public.barcode_stock_summary where prefix = 'zzt'", Integer.class));
+  }
+
+  @Test
+  void levels_coverEveryEdgeOfTheRules() {
+    List<BarcodeStock.Level> levels = barcodeStock.levels();
+    assertNotNull(levels);
+    BarcodeStock.Level ogk =
+        levels.stream().filter(l -> l.prefix().equals("ogk")).findFirst().orElseThrow();
+    assertEquals(0, ogk.sizeGroup());
+    assertEquals("up", ogk.position());
+    assertEquals(
+        jdbc.queryForObject(
+            "select count(*) from public.barcodes where code like 'ogk___' and is_available",
+            Integer.class),
+        ogk.available());
+  }
+}
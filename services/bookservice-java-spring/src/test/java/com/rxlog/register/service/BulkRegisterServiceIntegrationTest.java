@@ -0,0 +1,148 @@
+package com.rxlog.register.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.rxlog.register.api.BulkRegisterResponse;
+import com.rxlog.register.api.BulkRegisterResponse.RowError;
+import com.rxlog.register.web.BookDao;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Integration tests for bulk registration with a chunk size of two. Every chunk is written in its
+ * own transaction, so these tests commit for real and clean up after.
+ */
+@SpringBootTest(properties = "register.bulk.chunk-size=2")
+class BulkRegisterServiceIntegrationTest {
+
+  private static final String AUTHOR = "Bulk Test Author";
+
+  private static final String CSV_HEADER =
+      "author,publisher,pages,titleKeyword,titleKeywordPosition,width,height,readingStatus,barcode";
+
+  @Autowired JdbcTemplate jdbc;
+
+  @Autowired BulkRegisterService bulk;
+
+  @SpyBean BookDao bookDao;
+
+  @AfterEach
+  void cleanUp() {
+    for (String id :
+        jdbc.queryForList("select id::text from books where author = ?", String.class, AUTHOR)) {
+      jdbc.update("delete from book_change_log where book_id = ?::uuid", id);
+      jdbc.update("delete from book_barcodes where book_id = ?::uuid", id);
+      jdbc.update("delete from books where id = ?::uuid", id);
+    }
+  }
+
+  @Test
+  void rows_areWrittenOneChunkPerTransaction() throws Exception {
+    // Act
+    BulkRegisterResponse res =
+        bulk.registerNdjson(
+            ndjson(
+                row("Eins", "zzk001", 120),
+                row("Zwei", "zzk002", 120),
+                row("Drei", "zzk003", 120),
+                row("Vier", "zzk004", 120),
+                row("Fuenf", "zzk005", 120)));
+
+    // Assert: 2 + 2 + 1 rows, no row-by-row fallback
+    assertEquals(new BulkRegisterResponse(5, 5, List.of()), res);
+    verify(bookDao, times(3)).insertAll(any());
+    verify(bookDao, never()).insert(any());
+    assertEquals(List.of("Drei", "Eins", "Fuenf", "Vier", "Zwei"), titles());
+  }
+
+  @Test
+  void chunkTheDatabaseRejects_isRetriedRowByRow() throws Exception {
+    // Arrange: a width of 0 passes validation but not the check constraint on books.width
+    InputStream in =
+        ndjson(row("Eins", "zzk011", 120), row("Zwei", "zzk012", 0), row("Drei", "zzk013", 120));
+
+    // Act
+    BulkRegisterResponse res = bulk.registerNdjson(in);
+
+    // Assert: only the rejected row is lost, and it is reported without database details
+    assertEquals(
+        new BulkRegisterResponse(
+            3, 2, List.of(new RowError(2, List.of("DB_CONSTRAINT_VIOLATION")))),
+        res);
+    verify(bookDao, times(2)).insert(any());
+    assertEquals(List.of("Drei", "Eins"), titles());
+  }
+
+  @Test
+  void unreadableNdjsonLines_areReportedAndTheRestIsRegistered() throws Exception {
+    // Act
+    BulkRegisterResponse res =
+        bulk.registerNdjson(
+            ndjson(
+                row("Eins", "zzk021", 120),
+                "{\"author\": \"" + AUTHOR + "\", \"pages\": ",
+                "",
+                row("Drei", "zzk023", 120)));
+
+    // Assert: the blank line is no row, the broken one is row 2
+    assertEquals(3, res.received());
+    assertEquals(2, res.registered());
+    assertEquals(1, res.errors().size());
+    assertEquals(2, res.errors().get(0).row());
+    assertTrue(res.errors().get(0).errors().get(0).startsWith("unreadable: "));
+    assertEquals(List.of("Drei", "Eins"), titles());
+  }
+
+  @Test
+  void unreadableCsvRecords_areReportedAndTheRestIsRegistered() throws Exception {
+    // Arrange: record 2 has a bad number, and skipping the rest of it runs into a bad quote
+    String csv =
+        String.join(
+            "\n",
+            CSV_HEADER,
+            AUTHOR + ",Bulk Verlag,100,Eins,1,120,190,in_progress,zzk031",
+            AUTHOR + ",Bulk Verlag,x,Zwei,1,120,190,in_progress,\"zzk\"032",
+            AUTHOR + ",Bulk Verlag,100,Drei,1,120,190,in_progress,zzk033",
+            AUTHOR + ",Bulk Verlag,100,Vier,1,120,190,in_progress,zzk034");
+
+    // Act
+    BulkRegisterResponse res =
+        bulk.registerCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+    // Assert: record 2 is reported once and the records after it are still read
+    assertEquals(4, res.received());
+    assertEquals(3, res.registered());
+    assertEquals(1, res.errors().size());
+    assertEquals(2, res.errors().get(0).row());
+    assertEquals(List.of("Drei", "Eins", "Vier"), titles());
+  }
+
+  private static String row(String titleKeyword, String barcode, int width) {
+    return """
+        {"author": "%s", "publisher": "Bulk Verlag", "pages": 100, "titleKeyword": "%s", \
+        "titleKeywordPosition": 1, "width": %d, "height": 190, "readingStatus": "in_progress", \
+        "barcode": "%s"}"""
+        .formatted(AUTHOR, titleKeyword, width, barcode);
+  }
+
+  private static InputStream ndjson(String... lines) {
+    return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+  }
+
+  private List<String> titles() {
+    return jdbc.queryForList(
+        "select title_keyword from books where author = ? order by title_keyword",
+        String.class,
+        AUTHOR);
+  }
+}
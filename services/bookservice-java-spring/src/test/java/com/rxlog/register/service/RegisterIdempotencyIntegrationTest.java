@@ -0,0 +1,143 @@
+package com.rxlog.register.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.rxlog.register.api.RegisterBookRequest;
+import com.rxlog.register.api.RegisterBookResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/** Integration tests for Idempotency-Key handling; commits for real, so it cleans up after. */
+@SpringBootTest
+class RegisterIdempotencyIntegrationTest {
+
+  @Autowired JdbcTemplate jdbc;
+
+  @Autowired PlatformTransactionManager transactionManager;
+
+  @Autowired RegisterIdempotency idempotency;
+
+  @Autowired RegisterBookService service;
+
+  private final String key = "test-" + UUID.randomUUID();
+  private final AtomicInteger executions = new AtomicInteger();
+  private final List<String> bookIds = new ArrayList<>();
+
+  @AfterEach
+  void cleanUp() {
+    jdbc.update("delete from public.register_idempotency_keys where idempotency_key = ?", key);
+    for (String id : bookIds) {
+      jdbc.update("delete from books where id = ?::uuid", id);
+    }
+  }
+
+  @Test
+  void retry_returnsTheOriginalResponseWithoutRegisteringAgain() {
+    RegisterBookRequest req = request("Fontane");
+
+    RegisterBookResponse first = idempotency.execute(key, req, register(req, 0));
+    RegisterBookResponse retry = idempotency.execute(key, req, register(req, 0));
+
+    assertEquals(first, retry);
+    assertEquals(1, executions.get());
+  }
+
+  @Test
+  void concurrentDuplicates_coalesceOntoOneExecution() throws Exception {
+    RegisterBookRequest req = request("Fontane");
+    int threads = 8;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<RegisterBookResponse>> results = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        results.add(
+            pool.submit(
+                () -> {
+                  start.await();
+                  return idempotency.execute(key, req, register(req, 200));
+                }));
+      }
+      start.countDown();
+      RegisterBookResponse first = results.get(0).get();
+      for (Future<RegisterBookResponse> r : results) {
+        assertEquals(first, r.get());
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    assertEquals(1, executions.get());
+  }
+
+  @Test
+  void otherInstance_replaysFromTheDatabase() {
+    RegisterBookRequest req = request("Fontane");
+    RegisterBookResponse first = idempotency.execute(key, req, register(req, 0));
+
+    RegisterIdempotency otherInstance =
+        new RegisterIdempotency(jdbc, transactionManager, new SimpleMeterRegistry(), 100, 24);
+
+    assertEquals(first, otherInstance.execute(key, req, register(req, 0)));
+    assertEquals(1, executions.get());
+  }
+
+  @Test
+  void sameKeyWithAnotherBody_isRejected() {
+    RegisterBookRequest req = request("Fontane");
+    idempotency.execute(key, req, register(req, 0));
+
+    RegisterBookRequest other = request("Storm");
+    assertThrows(
+        RegisterIdempotency.KeyReusedException.class,
+        () -> idempotency.execute(key, other, register(other, 0)));
+    assertEquals(1, executions.get());
+  }
+
+  private Supplier<RegisterBookResponse> register(RegisterBookRequest req, long delayMs) {
+    return () -> {
+      executions.incrementAndGet();
+      try {
+        Thread.sleep(delayMs);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      RegisterBookResponse res = service.registerBook(req);
+      synchronized (bookIds) {
+        bookIds.add(res.bookId());
+      }
+      return res;
+    };
+  }
+
+  private static RegisterBookRequest request(String author) {
+    return new RegisterBookRequest(
+        author,
+        "Verlag",
+        100,
+        "Effi",
+        1,
+        null,
+        null,
+        null,
+        null,
+        120,
+        190,
+        "in_progress",
+        false,
+        "idem-" + UUID.randomUUID().toString().substring(0, 8));
+  }
+}
@@ -0,0 +1,62 @@
+package com.rxlog.register.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for size rule resolution (width band, edge placement, candidate order). */
+class SizeRulesTest {
+
+  private static final String RULES =
+      """
+      sizegroup,width_min_cm,width_max_cm,color,threshold_cm,low_prefix,high_prefix,special_prefix,special_exact_heights_cm
+      0,0.0,10.5,gk,17.5,dgk,ogk,lgk,20.5;21;21.5
+      1,10.6,11.0,ak,18.0,dak,oak,lak,20.5;21;21.5
+      7,12.5,12.5,"i, ik",19.0,"di, ik","oi, ik","li, ik",20.5;21;21.5
+      """;
+
+  private static final String RANKING = "001\n010\n100\nxyz\n\n101\n";
+
+  private static SizeRules rules() throws Exception {
+    return SizeRules.parse(new StringReader(RULES), new StringReader(RANKING));
+  }
+
+  private static BigDecimal cm(String v) {
+    return new BigDecimal(v);
+  }
+
+  @Test
+  void widthBandsAreInclusiveAndGapsHaveNoRule() throws Exception {
+    SizeRules r = rules();
+    assertEquals(0, r.ruleFor(cm("10.5")).sizeGroup());
+    assertEquals(1, r.ruleFor(cm("10.6")).sizeGroup());
+    assertEquals(1, r.ruleFor(cm("11.0")).sizeGroup());
+    assertNull(r.ruleFor(cm("10.55")));
+    assertNull(r.ruleFor(cm("11.1")));
+  }
+
+  @Test
+  void heightPicksSpecialLowOrHighPrefix() throws Exception {
+    SizeRules r = rules();
+    assertEquals("lgk", r.resolve(cm("10.0"), cm("21")).prefix());
+    assertEquals("left", r.resolve(cm("10.0"), cm("20.54")).position());
+    assertEquals("dgk", r.resolve(cm("10.0"), cm("17.4")).prefix());
+    assertEquals("ogk", r.resolve(cm("10.0"), cm("17.5")).prefix());
+    assertEquals("up", r.resolve(cm("10.0"), cm("17.5")).position());
+  }
+
+  @Test
+  void multiValuedCellsUseFirstToken() throws Exception {
+    SizeRules.Placement p = rules().resolve(cm("12.5"), cm("18"));
+    assertEquals("i", p.rule().color());
+    assertEquals("di", p.prefix());
+  }
+
+  @Test
+  void candidatesFollowRankingOrderAndSkipInvalidLines() throws Exception {
+    SizeRules.Placement p = rules().resolve(cm("10.8"), cm("19"));
+    assertEquals(java.util.List.of("oak001", "oak010", "oak100", "oak101"), p.candidates());
+  }
+}
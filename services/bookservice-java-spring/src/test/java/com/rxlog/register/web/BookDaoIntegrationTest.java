@@ -1,12 +1,11 @@
 package com.rxlog.register.web;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.*;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,10 +18,8 @@ class BookDaoIntegrationTest {
 
   @Autowired BookDao bookDao;
 
-  @MockBean BarcodeClient barcodeClient;
-
   @Test
-  void finishingBook_freesBarcodesAndCallsRelease() {
+  void finishingBook_freesBarcodesAndRestocksThem() {
     // Arrange: insert a book and attach one barcode
     String bookId =
         jdbc.queryForObject(
@@ -68,6 +65,11 @@ class BookDaoIntegrationTest {
 
     jdbc.update(
         "insert into book_barcodes (book_id, barcode) values (?::uuid, ?)", bookId, "os001");
+    jdbc.update(
+        """
+            insert into public.barcodes (code, is_available) values ('os001', false)
+            on conflict (code) do update set is_available = false
+            """);
 
     Integer beforeCount =
         jdbc.queryForObject(
@@ -93,8 +95,10 @@ class BookDaoIntegrationTest {
             "select count(*) from book_barcodes where book_id = ?::uuid", Integer.class, bookId);
     assertEquals(0, afterCount);
 
-    // Assert: barcodeClient.release was called for the freed barcode
-    verify(barcodeClient).release("os001");
+    // Assert: the code is back in stock for the pool
+    assertTrue(
+        jdbc.queryForObject(
+            "select is_available from public.barcodes where code = ?", Boolean.class, "os001"));
   }
 
   @Test
@@ -164,6 +168,254 @@ class BookDaoIntegrationTest {
     assertEquals(1, afterCount);
 
     // Assert: no release call when status didn't become finished/abandoned
-    verifyNoInteractions(barcodeClient);
+  }
+
+  @Test
+  void replacingBarcodes_keepsUnchangedRemovesDroppedAndAddsNew() {
+    // Arrange
+    String bookId =
+        jdbc.queryForObject(
+            """
+                insert into books (
+                    author,
+                    publisher,
+                    pages,
+                    title_keyword,
+                    title_keyword_position,
+                    width,
+                    height,
+                    reading_status,
+                    top_book,
+                    registered_at,
+                    reading_status_updated_at
+                )
+                values (
+                    'Test Author',
+                    'Test Publisher',
+                    100,
+                    'Test',
+                    1,
+                    100,
+                    200,
+                    'in_progress',
+                    false,
+                    now(),
+                    now()
+                )
+                returning id::text
+                """,
+            String.class);
+    assertNotNull(bookId);
+
+    jdbc.update(
+        "insert into book_barcodes (book_id, barcode) values (?::uuid, ?), (?::uuid, ?)",
+        bookId,
+        "os003",
+        bookId,
+        "os004");
+
+    // Act: keep os004, drop os003, add os005 (duplicates and blanks are ignored)
+    BookUpdateRequest req = new BookUpdateRequest();
+    req.setBarcodes(java.util.Arrays.asList(" os004 ", "os005", "os005", "", null));
+
+    boolean changed = bookDao.partialUpdate(bookId, req);
+    assertTrue(changed);
+
+    // Assert
+    java.util.List<String> codes =
+        jdbc.queryForList(
+            "select barcode from book_barcodes where book_id = ?::uuid order by barcode",
+            String.class,
+            bookId);
+    assertEquals(java.util.List.of("os004", "os005"), codes);
+
+    // Assert: book_search_view follows the barcode change
+    assertTrue(bookDao.search(null, null, null, "os003", null, null, 10).isEmpty());
+    java.util.List<BookSearchResult> found =
+        bookDao.search(null, null, null, "os005", null, null, 10);
+    assertEquals(1, found.size());
+    assertEquals(java.util.List.of("os004", "os005"), found.get(0).getBarcodes());
+  }
+
+  @Test
+  void fullText_matchesStemsAndRanksEarlyTitleKeywordsFirst() {
+    // Arrange: the same word as first title keyword of one book and third of another
+    String late =
+        jdbc.queryForObject(
+            """
+                insert into books (author, publisher, pages, width, height, reading_status,
+                                   title_keyword, title_keyword_position,
+                                   title_keyword3, title_keyword3_position)
+                values ('Test Author', 'Test Publisher', 100, 100, 200, 'in_progress',
+                        'Fahrt', 1, 'Quittenreise', 4)
+                returning id::text
+                """,
+            String.class);
+    String early =
+        jdbc.queryForObject(
+            """
+                insert into books (author, publisher, pages, width, height, reading_status,
+                                   title_keyword, title_keyword_position)
+                values ('Test Author', 'Test Publisher', 100, 100, 200, 'finished',
+                        'Quittenreisen', 1)
+                returning id::text
+                """,
+            String.class);
+
+    // Act
+    java.util.List<String> ranked =
+        bookDao.fullText("quittenreise", null, null, 10).items().stream()
+            .map(b -> b.getId())
+            .toList();
+    java.util.List<String> inProgress =
+        bookDao.fullText("Quittenreise -Zwiebel", "in_progress", null, 10).items().stream()
+            .map(b -> b.getId())
+            .toList();
+
+    // Assert: german stemming finds the plural, title position 1 ranks first
+    assertEquals(java.util.List.of(early, late), ranked);
+    assertEquals(java.util.List.of(late), inProgress);
+  }
+
+  @Test
+  void fullText_withMoreMatchesThanItRanks_saysTheResultIsTruncated() {
+    // Arrange: one book more than fullText ranks, all with the same keyword
+    jdbc.update(
+        """
+            insert into books (author, publisher, pages, width, height, reading_status,
+                               title_keyword, title_keyword_position, registered_at)
+            select 'Test Author', 'Test Publisher', 100, 100, 200, 'in_progress',
+                   'Zimtschnecke', 1, now() - make_interval(secs => g)
+            from generate_series(1, ?) g
+            """,
+        BookDao.FULL_TEXT_CANDIDATES + 1);
+
+    // Act
+    BookFullTextPage all = bookDao.fullText("zimtschnecke", null, null, 10);
+    BookFullTextPage fewer = bookDao.fullText("zimtschnecke", "finished", null, 10);
+
+    // Assert
+    assertTrue(all.truncated());
+    assertEquals(10, all.items().size());
+    assertFalse(fewer.truncated());
+    assertTrue(fewer.items().isEmpty());
+  }
+
+  @Test
+  void search_onTheProjection_holdsBooksWhoseAuthorIsTooLongForAnIndexEntry() {
+    // Arrange: an author that does not compress below the btree entry limit
+    String bookId =
+        jdbc.queryForObject(
+            """
+                insert into books (author, publisher, pages, width, height, reading_status,
+                                   title_keyword, title_keyword_position)
+                select 'Test Author ' || string_agg(md5(g::text), ''), 'Test Publisher', 100,
+                       100, 200, 'in_progress', 'Langname', 1
+                from generate_series(1, 400) g
+                returning id::text
+                """,
+            String.class);
+    jdbc.update(
+        "insert into book_barcodes (book_id, barcode) values (?::uuid, ?)", bookId, "zzl001");
+    BookDao projection = new BookDao(jdbc, event -> {}, new SimpleMeterRegistry(), true);
+
+    // Act
+    java.util.List<BookSearchResult> byBarcode =
+        projection.search(null, null, null, "zzl001", null, null, 10);
+    java.util.List<BookSearchResult> byTitle =
+        projection.search(null, null, "langname", null, "in_progress", null, 10);
+
+    // Assert
+    assertEquals(java.util.List.of(bookId), byBarcode.stream().map(b -> b.getId()).toList());
+    assertEquals(java.util.List.of(bookId), byTitle.stream().map(b -> b.getId()).toList());
+    assertEquals(java.util.List.of("zzl001"), byTitle.get(0).getBarcodes());
+    assertTrue(byTitle.get(0).getAuthor().length() > 12_000);
+  }
+
+  @Test
+  void partialUpdate_ofAnUnknownId_changesAndLogsNothing() {
+    // Arrange
+    String unknown = java.util.UUID.randomUUID().toString();
+    jdbc.update("insert into public.barcodes (code, is_available) values ('zzw001', true)");
+    BookUpdateRequest fields = new BookUpdateRequest();
+    fields.setReadingStatus("finished");
+    BookUpdateRequest barcodes = new BookUpdateRequest();
+    barcodes.setBarcodes(java.util.List.of("zzw001"));
+
+    // Act + Assert
+    assertFalse(bookDao.partialUpdate(unknown, fields));
+    assertFalse(bookDao.partialUpdate(unknown, barcodes));
+    assertEquals(
+        0,
+        jdbc.queryForObject(
+            "select count(*) from book_change_log where book_id = ?::uuid",
+            Integer.class,
+            unknown));
+    assertEquals(
+        true,
+        jdbc.queryForObject(
+            "select is_available from public.barcodes where code = 'zzw001'", Boolean.class));
+  }
+
+  @Test
+  void insertAll_insertsEveryBookWithItsBarcodeInInputOrder() {
+    // Act
+    java.util.List<String> ids =
+        bookDao.insertAll(
+            java.util.List.of(
+                new com.rxlog.register.api.RegisterBookRequest(
+                    "Test Author",
+                    "Test Publisher",
+                    100,
+                    "Erstes",
+                    1,
+                    null,
+                    null,
+                    null,
+                    null,
+                    100,
+                    200,
+                    "in_progress",
+                    false,
+                    "zzi001"),
+                new com.rxlog.register.api.RegisterBookRequest(
+                    "Test Author",
+                    "Test Publisher",
+                    120,
+                    "Zweites",
+                    1,
+                    null,
+                    null,
+                    null,
+                    null,
+                    110,
+                    210,
+                    "finished",
+                    true,
+                    "zzi002")));
+
+    // Assert: one id per request, in input order, each book with its barcode and a change entry
+    assertEquals(2, ids.size());
+    assertEquals(
+        java.util.List.of("Erstes/zzi001", "Zweites/zzi002"),
+        ids.stream()
+            .map(
+                id ->
+                    jdbc.queryForObject(
+                        """
+                            select b.title_keyword || '/' || bb.barcode
+                            from books b join book_barcodes bb on bb.book_id = b.id
+                            where b.id = ?::uuid
+                            """,
+                        String.class,
+                        id))
+            .toList());
+    assertEquals(
+        2,
+        jdbc.queryForObject(
+            "select count(*) from book_change_log where book_id = any(?::uuid[]) and kind = ?",
+            Integer.class,
+            ids.toArray(new String[0]),
+            BookChangeEvent.BOOK_INSERTED));
   }
 }
@@ -0,0 +1,72 @@
+package com.rxlog.register.web;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BookExportWriterTest {
+
+  private final BookExportRow row =
+      new BookExportRow(
+          "0f8fad5b-d9cb-469f-a165-70867728950e",
+          "Fontane, Theodor",
+          "Verlag \"Aufbau\"",
+          320,
+          "Effi",
+          1,
+          null,
+          null,
+          null,
+          null,
+          120,
+          190,
+          "finished",
+          OffsetDateTime.parse("2024-05-01T10:00:00Z"),
+          true,
+          null,
+          OffsetDateTime.parse("2024-04-01T08:30:00Z"),
+          List.of("ogk001", "ogk002"));
+
+  @Test
+  void csv_quotesOnlyWhereNeeded() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (BookExportWriter writer = BookExportWriter.csv(out)) {
+      writer.accept(row);
+    }
+
+    String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+    assertEquals(2, lines.length);
+    assertEquals(String.join(",", BookExportRow.COLUMNS), lines[0]);
+    assertEquals(
+        "0f8fad5b-d9cb-469f-a165-70867728950e,\"Fontane, Theodor\",\"Verlag \"\"Aufbau\"\"\","
+            + "320,Effi,1,,,,,120,190,finished,2024-05-01T10:00:00Z,true,,"
+            + "2024-04-01T08:30:00Z,ogk001;ogk002",
+        lines[1]);
+  }
+
+  @Test
+  void ndjson_writesOneObjectPerLineAndLeavesTheStreamOpen() throws Exception {
+    ObjectMapper mapper =
+        new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (BookExportWriter writer = BookExportWriter.ndjson(out, mapper.writer())) {
+      writer.accept(row);
+      writer.accept(row);
+    }
+    out.write('x'); // still writable
+
+    String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+    assertEquals(3, lines.length);
+    assertEquals("Fontane, Theodor", mapper.readTree(lines[0]).get("author").asText());
+    assertEquals("ogk002", mapper.readTree(lines[1]).get("barcodes").get(1).asText());
+  }
+}
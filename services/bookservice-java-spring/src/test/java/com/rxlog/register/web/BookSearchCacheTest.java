@@ -0,0 +1,163 @@
+package com.rxlog.register.web;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.rxlog.register.api.RegisterBookRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BookSearchCacheTest {
+
+  private final BookDao dao = mock(BookDao.class);
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private BookSearchCache cache;
+
+  private static final CatalogVersion V = new CatalogVersion(1, 0, 0);
+
+  private final BookSearchResult fontane = book("Theodor Fontane");
+
+  @BeforeEach
+  void setUp() {
+    cache = new BookSearchCache(dao, registry, 100, 60);
+    when(dao.searchPage(any(), any(), any(), any(), any(), any(), any(), anyInt()))
+        .thenAnswer(
+            inv ->
+                new BookSearchPage(
+                    "fontane".equals(inv.getArgument(0)) ? List.of(fontane) : List.of(), null));
+  }
+
+  @Test
+  void sameNormalizedFilters_hitTheCache() {
+    cache.searchPage(V, " Fontane ", null, null, null, "in_progress", true, null, 20);
+    cache.searchPage(V, "fontane", "", null, null, "in_progress", true, null, 20);
+
+    verify(dao, times(1)).searchPage(any(), any(), any(), any(), any(), any(), any(), anyInt());
+    assertEquals(1.0, registry.get("cache.gets").tag("result", "hit").functionCounter().count());
+  }
+
+  @Test
+  void updatingAContainedBook_evictsOnlyThatEntry() {
+    cache.searchPage(V, "fontane", null, null, null, null, null, null, 20);
+    cache.searchPage(V, "mann", null, null, null, null, null, null, 20);
+
+    BookUpdateRequest change = new BookUpdateRequest();
+    change.setPages(321);
+    cache.onUpdated(new BookUpdatedEvent(fontane.getId(), change));
+
+    cache.searchPage(V, "fontane", null, null, null, null, null, null, 20);
+    cache.searchPage(V, "mann", null, null, null, null, null, null, 20);
+    verify(dao, times(2))
+        .searchPage(eq("fontane"), any(), any(), any(), any(), any(), any(), anyInt());
+    verify(dao, times(1))
+        .searchPage(eq("mann"), any(), any(), any(), any(), any(), any(), anyInt());
+  }
+
+  @Test
+  void updateIntoAFilteredStatus_evictsThatFilter() {
+    cache.searchPage(V, null, null, null, null, "finished", null, null, 20);
+
+    BookUpdateRequest change = new BookUpdateRequest();
+    change.setReadingStatus("finished");
+    cache.onUpdated(new BookUpdatedEvent(UUID.randomUUID().toString(), change));
+
+    cache.searchPage(V, null, null, null, null, "finished", null, null, 20);
+    verify(dao, times(2)).searchPage(any(), any(), any(), any(), any(), any(), any(), anyInt());
+  }
+
+  @Test
+  void insert_evictsMatchingFirstPagesButNotDeeperOnes() {
+    BookSearchCursor after = new BookSearchCursor(Instant.now(), UUID.randomUUID());
+    cache.searchPage(V, "fontane", null, null, null, null, null, null, 20);
+    cache.searchPage(V, "fontane", null, null, null, null, null, after, 20);
+    cache.searchPage(V, "mann", null, null, null, null, null, null, 20);
+
+    cache.onInserted(
+        new BooksInsertedEvent(
+            List.of(UUID.randomUUID().toString()), List.of(request("Theodor Fontane"))));
+
+    cache.searchPage(V, "fontane", null, null, null, null, null, null, 20);
+    cache.searchPage(V, "fontane", null, null, null, null, null, after, 20);
+    cache.searchPage(V, "mann", null, null, null, null, null, null, 20);
+    verify(dao, times(2))
+        .searchPage(eq("fontane"), any(), any(), any(), any(), any(), isNull(), anyInt());
+    verify(dao, times(1))
+        .searchPage(eq("fontane"), any(), any(), any(), any(), any(), eq(after), anyInt());
+    verify(dao, times(1))
+        .searchPage(eq("mann"), any(), any(), any(), any(), any(), any(), anyInt());
+  }
+
+  @Test
+  void readingStatus_isNormalizedInTheKeyAndWhenEvicting() {
+    cache.searchPage(V, null, null, null, null, " Finished ", null, null, 20);
+    cache.searchPage(V, null, null, null, null, "finished", null, null, 20);
+
+    BookUpdateRequest change = new BookUpdateRequest();
+    change.setReadingStatus("FINISHED");
+    cache.onUpdated(new BookUpdatedEvent(UUID.randomUUID().toString(), change));
+
+    cache.searchPage(V, null, null, null, null, "finished", null, null, 20);
+    verify(dao, times(2)).searchPage(any(), any(), any(), any(), any(), any(), any(), anyInt());
+  }
+
+  @Test
+  void hitFromAnOlderVersion_isKeptWhileNoChangedBookCanBePartOfIt() {
+    CatalogVersion later = new CatalogVersion(5, 0, 0);
+    when(dao.changesSince(V.settled(), BookSearchCache.REVALIDATE_LIMIT))
+        .thenReturn(new BookChanges(List.of(book("Thomas Mann")), 5, false));
+    cache.searchPage(V, "fontane", null, null, null, null, null, null, 20);
+
+    BookSearchCache.Versioned<BookSearchPage> revalidated =
+        cache.searchPage(later, "fontane", null, null, null, null, null, null, 20);
+    cache.searchPage(later, "fontane", null, null, null, null, null, null, 20);
+
+    assertEquals(later, revalidated.version());
+    verify(dao, times(1)).searchPage(any(), any(), any(), any(), any(), any(), any(), anyInt());
+    verify(dao, times(1)).changesSince(anyLong(), anyInt());
+  }
+
+  @Test
+  void hitFromAnOlderVersion_isReloadedOnceABookInItChanged() {
+    CatalogVersion later = new CatalogVersion(5, 0, 0);
+    when(dao.changesSince(V.settled(), BookSearchCache.REVALIDATE_LIMIT))
+        .thenReturn(new BookChanges(List.of(fontane), 5, false));
+    cache.searchPage(V, "fontane", null, null, null, null, null, null, 20);
+
+    cache.searchPage(later, "fontane", null, null, null, null, null, null, 20);
+
+    verify(dao, times(2)).searchPage(any(), any(), any(), any(), any(), any(), any(), anyInt());
+  }
+
+  private static BookSearchResult book(String author) {
+    BookSearchResult r = new BookSearchResult();
+    r.setId(UUID.randomUUID().toString());
+    r.setAuthor(author);
+    r.setRegisteredAt(OffsetDateTime.now(ZoneOffset.UTC));
+    return r;
+  }
+
+  private static RegisterBookRequest request(String author) {
+    return new RegisterBookRequest(
+        author,
+        "Verlag",
+        100,
+        "Effi",
+        1,
+        null,
+        null,
+        null,
+        null,
+        120,
+        190,
+        "in_progress",
+        false,
+        "ogk001");
+  }
+}
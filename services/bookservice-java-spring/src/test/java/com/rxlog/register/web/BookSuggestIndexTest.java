@@ -0,0 +1,54 @@
+package com.rxlog.register.web;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.rxlog.register.web.BookSuggestIndex.Suggestion;
+import com.rxlog.register.web.BookSuggestIndex.Terms;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class BookSuggestIndexTest {
+
+  private final Terms authors =
+      Terms.of(
+          Map.of(
+              "Theodor Fontane", 7,
+              "theodor fontane", 1,
+              "Thomas Mann", 12,
+              "Theodor Storm", 3,
+              "Thea Dorn", 3,
+              "Heinrich Mann", 5));
+
+  @Test
+  void prefix_isCaseInsensitiveAndRankedByBooksThenAlphabetically() {
+    assertEquals(
+        List.of(
+            new Suggestion("Thomas Mann", 12),
+            new Suggestion("Theodor Fontane", 8),
+            new Suggestion("Thea Dorn", 3),
+            new Suggestion("Theodor Storm", 3)),
+        authors.top("th", 10));
+    assertEquals(List.of(new Suggestion("Thomas Mann", 12)), authors.top("th", 1));
+    assertEquals(
+        List.of(new Suggestion("Theodor Fontane", 8), new Suggestion("Theodor Storm", 3)),
+        authors.top("theodor", 10));
+    assertEquals(List.of(), authors.top("x", 10));
+  }
+
+  @Test
+  void plus_addsToExistingTermsAndInsertsNewOnesInOrder() {
+    Terms more = authors.plus(Map.of("THEA DORN", 2, "Theodor Heuss", 1, "Anna Seghers", 1));
+
+    assertEquals(
+        List.of(
+            new Suggestion("Theodor Fontane", 8),
+            new Suggestion("Thea Dorn", 5),
+            new Suggestion("Theodor Storm", 3),
+            new Suggestion("Theodor Heuss", 1)),
+        more.top("the", 10));
+    assertEquals(List.of(new Suggestion("Anna Seghers", 1)), more.top("a", 10));
+    assertEquals(7, more.size());
+    assertEquals(5, authors.size(), "the original snapshot is unchanged");
+  }
+}
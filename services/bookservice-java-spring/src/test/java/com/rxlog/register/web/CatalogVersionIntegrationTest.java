@@ -0,0 +1,204 @@
+package com.rxlog.register.web;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.rxlog.register.api.RegisterBookRequest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Integration tests for catalog versions, delta sync and the change log (V112). Versions only
+ * settle once their transaction has committed, so these tests commit for real and clean up after.
+ */
+@SpringBootTest
+class CatalogVersionIntegrationTest {
+
+  @Autowired JdbcTemplate jdbc;
+
+  @Autowired DataSource dataSource;
+
+  @Autowired BookDao bookDao;
+
+  @Autowired BookChangeFeed changeFeed;
+
+  private final List<String> bookIds = new ArrayList<>();
+
+  @AfterEach
+  void cleanUp() {
+    for (String id : bookIds) {
+      jdbc.update("delete from book_change_log where book_id = ?::uuid", id);
+      jdbc.update("delete from book_barcodes where book_id = ?::uuid", id);
+      jdbc.update("delete from books where id = ?::uuid", id);
+    }
+  }
+
+  @Test
+  void writes_showUpInChangesSinceOldestFirst() {
+    // Arrange
+    long before = bookDao.catalogVersion().settled();
+    String first = insertBook("Erste");
+    String second = insertBook("Zweite");
+
+    // Act: touch the first book again, so it is now the newest change
+    BookUpdateRequest req = new BookUpdateRequest();
+    req.setPages(300);
+    assertTrue(bookDao.partialUpdate(first, req));
+    awaitSettled(first);
+
+    // Assert: oldest change first, a full page points at its last row
+    BookChanges page = bookDao.changesSince(before, 1);
+    assertEquals(List.of(second), ids(page));
+    assertTrue(page.hasMore());
+
+    BookChanges rest = bookDao.changesSince(page.version(), 10);
+    assertEquals(List.of(first), ids(rest));
+    assertEquals(300, rest.items().get(0).getPages());
+    assertFalse(rest.hasMore());
+    assertTrue(rest.version() >= changeVersion(first));
+    assertTrue(rest.version() <= bookDao.catalogVersion().settled());
+
+    assertTrue(bookDao.changesSince(rest.version(), 10).items().isEmpty());
+  }
+
+  @Test
+  void insertUpdateAndRelease_areAppendedToTheChangeLogInOrder() {
+    // Arrange
+    long before = bookDao.catalogVersion().settled();
+    String bookId =
+        bookDao.insert(
+            new RegisterBookRequest(
+                "Test Author",
+                "Test Publisher",
+                100,
+                "Feed",
+                1,
+                null,
+                null,
+                null,
+                null,
+                100,
+                200,
+                "in_progress",
+                false,
+                "zzv001"));
+    bookIds.add(bookId);
+
+    // Act: finishing the book frees its barcode
+    BookUpdateRequest req = new BookUpdateRequest();
+    req.setReadingStatus("finished");
+    assertTrue(bookDao.partialUpdate(bookId, req));
+    awaitSettled(bookId);
+
+    // Assert
+    List<BookChangeEvent> events = changeFeed.read(before, 10);
+    assertEquals(
+        List.of(
+            BookChangeEvent.BOOK_INSERTED,
+            BookChangeEvent.BARCODES_RELEASED,
+            BookChangeEvent.BOOK_UPDATED),
+        events.stream().map(BookChangeEvent::kind).toList());
+    assertTrue(events.stream().allMatch(e -> bookId.equals(e.bookId())));
+    assertEquals(List.of("zzv001"), events.get(1).barcodes());
+    assertEquals("finished", events.get(2).book().getReadingStatus());
+
+    assertTrue(changeFeed.read(events.get(2).offset(), 10).isEmpty());
+  }
+
+  @Test
+  void openWrite_holdsBackLaterCommitsUntilItCommits() throws Exception {
+    long before = bookDao.catalogVersion().settled();
+    try (Connection open = dataSource.getConnection()) {
+      // Arrange: a write that is still open when a later one commits
+      open.setAutoCommit(false);
+      String early = insertBook(open, "Frueh");
+      CatalogVersion whileOpen = bookDao.catalogVersion();
+      String late = insertBook("Spaet");
+
+      // Assert: the later commit changes the ETag but does not settle past the open write
+      CatalogVersion afterLate = bookDao.catalogVersion();
+      assertNotEquals(whileOpen.tag(), afterLate.tag());
+      assertTrue(afterLate.settled() < changeVersion(late));
+      BookChanges changes = bookDao.changesSince(before, 10);
+      assertTrue(ids(changes).contains(late));
+      assertTrue(changes.version() < changeVersion(late));
+      assertEquals(List.of(), logged(before));
+
+      // Act
+      open.commit();
+      awaitSettled(late);
+
+      // Assert: the feed delivers both, in the order the writes started
+      assertEquals(List.of(early, late), logged(before));
+    }
+  }
+
+  /** A book plus its change log entry, written in one statement and so one transaction. */
+  private static final String INSERT_BOOK =
+      """
+          with b as (
+            insert into books (author, publisher, pages, title_keyword, width, height,
+                               reading_status, registered_at, reading_status_updated_at)
+            values ('Test Author', 'Test Publisher', 100, ?, 100, 200,
+                    'in_progress', now(), now())
+            returning id
+          )
+          insert into book_change_log (version, kind, book_id)
+          select public.catalog_bump(), ?, id from b
+          returning book_id::text
+          """;
+
+  private String insertBook(String titleKeyword) {
+    String id =
+        jdbc.queryForObject(INSERT_BOOK, String.class, titleKeyword, BookChangeEvent.BOOK_INSERTED);
+    bookIds.add(id);
+    return id;
+  }
+
+  /** Same as {@link #insertBook(String)}, in a transaction the caller commits. */
+  private String insertBook(Connection c, String titleKeyword) throws Exception {
+    try (PreparedStatement ps = c.prepareStatement(INSERT_BOOK)) {
+      ps.setString(1, titleKeyword);
+      ps.setString(2, BookChangeEvent.BOOK_INSERTED);
+      try (ResultSet rs = ps.executeQuery()) {
+        rs.next();
+        bookIds.add(rs.getString(1));
+        return rs.getString(1);
+      }
+    }
+  }
+
+  private long changeVersion(String id) {
+    return jdbc.queryForObject(
+        "select change_version from books where id = ?::uuid", Long.class, id);
+  }
+
+  /** Waits until the latest change of the book has settled; other tests' writes may hold it up. */
+  private void awaitSettled(String id) {
+    long version = changeVersion(id);
+    for (int i = 0; i < 50 && bookDao.catalogVersion().settled() < version; i++) {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private List<String> logged(long after) {
+    return changeFeed.read(after, 10).stream().map(BookChangeEvent::bookId).toList();
+  }
+
+  private static List<String> ids(BookChanges changes) {
+    return changes.items().stream().map(BookSearchResult::getId).toList();
+  }
+}